@@ -0,0 +1,100 @@
+package org.minimallycorrect.javatransformer.benchmark;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.minimallycorrect.javatransformer.api.MethodInfo;
+import org.minimallycorrect.javatransformer.api.code.CodeFragment;
+import org.minimallycorrect.javatransformer.internal.ByteCodeInfo;
+import org.minimallycorrect.javatransformer.internal.asm.CombinedAnalyzer;
+import org.minimallycorrect.javatransformer.internal.asm.CombinedInterpreter;
+import org.minimallycorrect.javatransformer.internal.asm.CombinedValue;
+import org.minimallycorrect.javatransformer.internal.asm.TieredClassNode;
+
+/**
+ * Analyses and inserts code into a generated method with a configurable number of switch cases
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AnalysisBenchmark {
+	private static final String CLASS_NAME = SyntheticCorpus.getClassName(0);
+	@Param({"10", "1000"})
+	public int branches;
+	private byte[] bytes;
+	private MethodNode method;
+	private int firstCall;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		bytes = SyntheticCorpus.generateClass(0, 1, branches);
+		ClassNode node = new ClassNode();
+		new ClassReader(bytes).accept(node, ClassReader.EXPAND_FRAMES);
+		for (MethodNode methodNode : node.methods)
+			if (methodNode.name.equals("compute0"))
+				method = methodNode;
+		for (AbstractInsnNode insn : method.instructions.toArray())
+			if (insn instanceof MethodInsnNode) {
+				firstCall = method.instructions.indexOf(insn);
+				break;
+			}
+	}
+
+	@Benchmark
+	public Object analyze() throws AnalyzerException {
+		return CombinedAnalyzer.analyze(new CombinedInterpreter(), CLASS_NAME, method);
+	}
+
+	/**
+	 * Analyses only the instructions needed to find the frames of the first method call
+	 */
+	@Benchmark
+	public Object analyzeFirstCall() throws AnalyzerException {
+		boolean[] analysed = CombinedAnalyzer.findInstructionsReaching(method, firstCall, firstCall);
+		return CombinedAnalyzer.<CombinedValue>analyze(new CombinedInterpreter(), CLASS_NAME, method, analysed);
+	}
+
+	private CodeFragment.Body getCodeFragment(ByteCodeInfo info, String name) {
+		MethodInfo method = info.getMethods().filter(it -> it.getName().equals(name)).findFirst().orElseThrow(() -> new IllegalStateException("Missing method " + name));
+		CodeFragment.Body body = method.getCodeFragment();
+		if (body == null)
+			throw new IllegalStateException("No code in " + name);
+		return body;
+	}
+
+	/**
+	 * Inserts a call to hook before every method call, then writes the class
+	 */
+	@Benchmark
+	public byte[] insert() {
+		ByteCodeInfo info = new ByteCodeInfo(new TieredClassNode(() -> bytes), CLASS_NAME.replace('/', '.'), new HashMap<>());
+		CodeFragment.Body hook = getCodeFragment(info, "hook");
+		CodeFragment.Body body = getCodeFragment(info, "compute0");
+		List<CodeFragment.MethodCall> calls = body.findFragments(CodeFragment.MethodCall.class);
+		body.insertAt(calls, hook, CodeFragment.InsertionPosition.BEFORE);
+		return info.toByteArray();
+	}
+}
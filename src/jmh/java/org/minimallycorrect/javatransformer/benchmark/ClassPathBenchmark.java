@@ -0,0 +1,75 @@
+package org.minimallycorrect.javatransformer.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.ImportDeclaration;
+
+import org.minimallycorrect.javatransformer.api.ClassPath;
+import org.minimallycorrect.javatransformer.internal.ResolutionContext;
+
+/**
+ * Indexes a generated jar, and resolves names against it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ClassPathBenchmark {
+	private static final String[] NAMES = {"String", "List", "Generated1", "Map", "java.util.ArrayList"};
+	@Param({"100", "1000"})
+	public int classes;
+	private Path directory;
+	private Path jar;
+	private ResolutionContext resolutionContext;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("javatransformer-benchmark");
+		jar = directory.resolve("input.jar");
+		SyntheticCorpus.writeJar(jar, classes, 1, 1);
+
+		List<ImportDeclaration> imports = JavaParser.parse("import java.util.*;\nimport java.util.Map;\nclass A {}").getImports();
+		ClassPath classPath = new ClassPath(Collections.singleton(jar));
+		resolutionContext = ResolutionContext.of(SyntheticCorpus.PACKAGE.replace('/', '.'), imports, Collections.emptyList(), classPath);
+		resolutionContext.resolve(NAMES[0]);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		SyntheticCorpus.deleteRecursively(directory);
+	}
+
+	@Benchmark
+	public boolean initialise() {
+		return new ClassPath(Collections.singleton(jar)).classExists(SyntheticCorpus.getClassName(0).replace('/', '.'));
+	}
+
+	@Benchmark
+	public void resolve(Blackhole blackhole) {
+		for (String name : NAMES)
+			blackhole.consume(resolutionContext.resolve(name));
+	}
+}
@@ -0,0 +1,177 @@
+package org.minimallycorrect.javatransformer.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Generates classes and sources of a configurable size for benchmarks, so results don't depend on a checked in jar
+ * <p>
+ * Each generated class has a static {@code hook} method and methods which switch over their parameter and call
+ * {@code hook}, {@link Math#max(int, int)} and the previous class.
+ */
+final class SyntheticCorpus implements Opcodes {
+	static final String PACKAGE = "org/minimallycorrect/javatransformer/benchmark/generated";
+
+	private SyntheticCorpus() {}
+
+	static String getClassName(int index) {
+		return PACKAGE + "/Generated" + index;
+	}
+
+	/**
+	 * @param methods  number of methods besides the constructor and hook
+	 * @param branches number of cases in each method's switch
+	 */
+	static byte[] generateClass(int index, int methods, int branches) {
+		String name = getClassName(index);
+		String previous = getClassName(Math.max(0, index - 1));
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+		cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, name, null, "java/lang/Object", null);
+		cw.visitField(ACC_PRIVATE | ACC_STATIC, "counter", "I", null, null).visitEnd();
+
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+		mv.visitCode();
+		mv.visitVarInsn(ALOAD, 0);
+		mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, "hook", "()V", null, null);
+		mv.visitCode();
+		mv.visitFieldInsn(GETSTATIC, name, "counter", "I");
+		mv.visitInsn(ICONST_1);
+		mv.visitInsn(IADD);
+		mv.visitFieldInsn(PUTSTATIC, name, "counter", "I");
+		mv.visitInsn(RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		for (int i = 0; i < methods; i++)
+			generateMethod(cw, "compute" + i, branches, previous);
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private static void generateMethod(ClassWriter cw, String methodName, int branches, String previous) {
+		MethodVisitor mv = cw.visitMethod(ACC_PUBLIC | ACC_STATIC, methodName, "(I)I", null, null);
+		mv.visitCode();
+		Label end = new Label();
+		Label dflt = new Label();
+		Label[] cases = new Label[branches];
+		for (int i = 0; i < branches; i++)
+			cases[i] = new Label();
+		mv.visitVarInsn(ILOAD, 0);
+		mv.visitTableSwitchInsn(0, branches - 1, dflt, cases);
+		for (int i = 0; i < branches; i++) {
+			mv.visitLabel(cases[i]);
+			mv.visitMethodInsn(INVOKESTATIC, previous, "hook", "()V", false);
+			mv.visitVarInsn(ILOAD, 0);
+			mv.visitLdcInsn(i);
+			mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "max", "(II)I", false);
+			mv.visitVarInsn(ISTORE, 0);
+			mv.visitJumpInsn(GOTO, end);
+		}
+		mv.visitLabel(dflt);
+		mv.visitInsn(ICONST_M1);
+		mv.visitVarInsn(ISTORE, 0);
+		mv.visitLabel(end);
+		mv.visitVarInsn(ILOAD, 0);
+		mv.visitInsn(IRETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+	}
+
+	static String generateSource(int index, int methods, int branches) {
+		String name = getClassName(index);
+		String previous = getClassName(Math.max(0, index - 1)).replace('/', '.');
+		StringBuilder source = new StringBuilder();
+		source.append("package ").append(PACKAGE.replace('/', '.')).append(";\n\n");
+		source.append("import java.util.List;\n\n");
+		source.append("public class ").append(name.substring(name.lastIndexOf('/') + 1)).append(" {\n");
+		source.append("\tprivate static int counter;\n\n");
+		source.append("\tpublic static void hook() {\n\t\tcounter++;\n\t}\n");
+		for (int i = 0; i < methods; i++) {
+			source.append("\n\tpublic static int compute").append(i).append("(int value, List<String> names) {\n");
+			source.append("\t\tswitch (value) {\n");
+			for (int j = 0; j < branches; j++) {
+				source.append("\t\t\tcase ").append(j).append(":\n");
+				source.append("\t\t\t\t").append(previous).append(".hook();\n");
+				source.append("\t\t\t\treturn Math.max(value, ").append(j).append(");\n");
+			}
+			source.append("\t\t\tdefault:\n\t\t\t\treturn names.size();\n\t\t}\n\t}\n");
+		}
+		source.append("}\n");
+		return source.toString();
+	}
+
+	static void writeJar(Path jar, int classes, int methods, int branches) {
+		try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(jar)))) {
+			for (int i = 0; i < classes; i++) {
+				zos.putNextEntry(new ZipEntry(getClassName(i) + ".class"));
+				zos.write(generateClass(i, methods, branches));
+				zos.closeEntry();
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param sources true to write .java files, false for .class files
+	 */
+	static void writeFolder(Path folder, int classes, int methods, int branches, boolean sources) {
+		try {
+			Files.createDirectories(folder.resolve(PACKAGE));
+			for (int i = 0; i < classes; i++) {
+				if (sources) {
+					Files.write(folder.resolve(getClassName(i) + ".java"), generateSource(i, methods, branches).getBytes(StandardCharsets.UTF_8));
+				} else {
+					try (OutputStream os = Files.newOutputStream(folder.resolve(getClassName(i) + ".class"))) {
+						os.write(generateClass(i, methods, branches));
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	static void deleteRecursively(Path path) {
+		if (!Files.exists(path))
+			return;
+		try {
+			Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					Files.delete(file);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+					Files.delete(dir);
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.minimallycorrect.javatransformer.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.minimallycorrect.javatransformer.api.JavaTransformer;
+import org.minimallycorrect.javatransformer.api.Transformer;
+import org.minimallycorrect.javatransformer.api.code.CodeFragment;
+import org.minimallycorrect.javatransformer.api.code.IntermediateValue;
+
+/**
+ * Loads, transforms and saves a generated jar, folder of classes or folder of sources
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TransformBenchmark {
+	@Param({"100", "1000"})
+	public int classes;
+	@Param({"10"})
+	public int methods;
+	@Param({"10"})
+	public int branches;
+	@Param({"jar", "folder", "source"})
+	public String input;
+	private Path directory;
+	private Path inputPath;
+	private Path outputPath;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("javatransformer-benchmark");
+		switch (input) {
+			case "jar":
+				inputPath = directory.resolve("input.jar");
+				SyntheticCorpus.writeJar(inputPath, classes, methods, branches);
+				break;
+			case "folder":
+			case "source":
+				inputPath = directory.resolve("input");
+				SyntheticCorpus.writeFolder(inputPath, classes, methods, branches, input.equals("source"));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown input type " + input);
+		}
+		outputPath = directory.resolve(input.equals("jar") ? "output.jar" : "output");
+	}
+
+	@TearDown(Level.Invocation)
+	public void deleteOutput() {
+		SyntheticCorpus.deleteRecursively(outputPath);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		SyntheticCorpus.deleteRecursively(directory);
+	}
+
+	private void transform(Transformer transformer) {
+		JavaTransformer javaTransformer = new JavaTransformer();
+		javaTransformer.getClassPath().addPath(inputPath);
+		javaTransformer.addTransformer(transformer);
+		javaTransformer.transform(inputPath, outputPath);
+	}
+
+	/**
+	 * Only changes access flags, so method code is never read
+	 */
+	@Benchmark
+	public void transformAccess() {
+		transform(c -> c.accessFlags(it -> it.makeAccessible(true)));
+	}
+
+	/**
+	 * Finds the inputs of every method call, which requires analysing the code of every method
+	 */
+	@Benchmark
+	public void transformMethodCalls() {
+		transform(c -> c.getMethods().forEach(method -> {
+			CodeFragment.Body body = method.getCodeFragment();
+			if (body == null)
+				return;
+			for (CodeFragment.MethodCall call : body.findFragments(CodeFragment.MethodCall.class)) {
+				List<IntermediateValue> inputTypes = call.getInputTypes();
+				if (inputTypes.size() > 2)
+					throw new IllegalStateException("Unexpected inputs " + inputTypes + " for " + call);
+			}
+		}));
+	}
+}
@@ -0,0 +1,60 @@
+package org.minimallycorrect.javatransformer.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import org.minimallycorrect.javatransformer.api.Type;
+import org.minimallycorrect.javatransformer.internal.MethodDescriptor;
+
+/**
+ * Parses type and method descriptors and signatures
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TypeBenchmark {
+	private static final String MAP_DESCRIPTOR = "Ljava/util/Map;";
+	private static final String MAP_SIGNATURE = "Ljava/util/Map<Ljava/lang/String;Ljava/util/List<Ljava/lang/Integer;>;>;";
+	private static final String METHOD_DESCRIPTOR = "(ILjava/lang/String;[JLjava/util/Map;)Ljava/util/List;";
+	private static final String METHOD_SIGNATURE = "<T:Ljava/lang/Object;>(ILjava/lang/String;[JLjava/util/Map<TT;Ljava/lang/String;>;)Ljava/util/List<TT;>;";
+
+	@Benchmark
+	public Type typeOf() {
+		return Type.of("java.util.Map");
+	}
+
+	@Benchmark
+	public void typeArguments(Blackhole blackhole) {
+		Type type = new Type(MAP_DESCRIPTOR, MAP_SIGNATURE);
+		for (Type argument : type.getTypeArguments())
+			blackhole.consume(argument.getClassName());
+	}
+
+	@Benchmark
+	public void methodDescriptor(Blackhole blackhole) {
+		MethodDescriptor descriptor = new MethodDescriptor(METHOD_DESCRIPTOR, null);
+		blackhole.consume(descriptor.getParameters());
+		blackhole.consume(descriptor.getReturnType());
+	}
+
+	@Benchmark
+	public void methodSignature(Blackhole blackhole) {
+		MethodDescriptor descriptor = new MethodDescriptor(METHOD_DESCRIPTOR, METHOD_SIGNATURE);
+		blackhole.consume(descriptor.getParameters());
+		blackhole.consume(descriptor.getReturnType());
+		blackhole.consume(descriptor.getTypeVariables());
+	}
+}
@@ -1,19 +1,29 @@
 package org.minimallycorrect.javatransformer.api;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.FileVisitResult;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.val;
 
@@ -24,16 +34,57 @@ import com.github.javaparser.JavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.TypeDeclaration;
 
+import org.minimallycorrect.javatransformer.internal.ClassHierarchy;
+import org.minimallycorrect.javatransformer.internal.ClassPathIndex;
+import org.minimallycorrect.javatransformer.internal.PlatformClassIndex;
+import org.minimallycorrect.javatransformer.internal.util.ClassNameSet;
+import org.minimallycorrect.javatransformer.internal.util.IOUtil;
 import org.minimallycorrect.javatransformer.internal.util.JVMUtil;
+import org.minimallycorrect.javatransformer.internal.util.JavaTypeNameScanner;
 import org.minimallycorrect.javatransformer.internal.util.Joiner;
+import org.minimallycorrect.javatransformer.internal.util.ParallelFileWalker;
+import org.minimallycorrect.javatransformer.internal.zip.ZipArchive;
 
-// TODO: make this faster by using dumb regexes instead of JavaParser?
-// probably not worth doing
-public class ClassPath {
-	private final HashSet<String> classes = new HashSet<>();
+public class ClassPath implements AutoCloseable {
+	/**
+	 * Incremented whenever the paths or classes of this {@link ClassPath} change, invalidating its merged snapshots.
+	 * Snapshots of children are invalidated when their parent's merged snapshot is replaced.
+	 */
+	private final AtomicLong version = new AtomicLong();
+	/**
+	 * Never modified after being published, replaced with an updated copy when paths are added after loading
+	 */
+	private volatile ClassNameSet classes = ClassNameSet.EMPTY;
 	private final HashSet<Path> inputPaths = new HashSet<>();
 	private final ClassPath parent;
-	private boolean loaded;
+	private volatile boolean loaded;
+	/**
+	 * Directory to keep persistent class name indexes in, so unchanged inputs don't need to be rescanned.
+	 * Inherited from the parent {@link ClassPath} if not set.
+	 */
+	@Nullable
+	@Setter
+	private volatile Path indexDirectory;
+	/**
+	 * Home folder of the JDK whose java.* and javax.* classes are visible through this class path. Inherited from the
+	 * parent {@link ClassPath} if not set, defaults to the running JDK.
+	 */
+	@Nullable
+	@Setter
+	private volatile Path platformJavaHome;
+	/**
+	 * Classes of this class path and all of its parents, shared with child class paths so lookups don't walk the chain
+	 */
+	@Nullable
+	private volatile Snapshot<ClassNameSet> mergedClasses;
+	@Nullable
+	private volatile Snapshot<Set<Path>> mergedPaths;
+	@Nullable
+	private volatile ClassHierarchy classHierarchy;
+	/**
+	 * Jars opened to read class files from, kept open until this class path is closed
+	 */
+	private final Map<Path, ZipArchive> classFileArchives = new ConcurrentHashMap<>();
 
 	private ClassPath(@Nullable ClassPath parent) {
 		this.parent = parent;
@@ -57,11 +108,129 @@ public class ClassPath {
 	@Override
 	public String toString() {
 		initialise();
-		return "[" + parent.toString() + ", " + inputPaths + " classes:\n" + Joiner.on("\n").join(classes.stream().sorted()) + "]";
+		return "[" + (parent == null ? "" : parent + ", ") + inputPaths + " classes:\n" + Joiner.on("\n").join(classes.stream().sorted()) + "]";
 	}
 
 	/**
-	 * Returns whether the given class name exists in this class path
+	 * Closes the jars opened to read class files from this class path. Its parents are not closed. The class path can
+	 * still be used afterwards, reopening jars as needed, but must not be closed while class files are being read.
+	 */
+	@Override
+	public void close() {
+		IOException exception = null;
+		for (Iterator<ZipArchive> iterator = classFileArchives.values().iterator(); iterator.hasNext(); ) {
+			val archive = iterator.next();
+			iterator.remove();
+			try {
+				archive.close();
+			} catch (IOException e) {
+				if (exception == null)
+					exception = e;
+				else
+					exception.addSuppressed(e);
+			}
+		}
+		if (exception != null)
+			throw new UncheckedIOException(exception);
+	}
+
+	@Nullable
+	public Path getIndexDirectory() {
+		val indexDirectory = this.indexDirectory;
+		if (indexDirectory == null && parent != null)
+			return parent.getIndexDirectory();
+		return indexDirectory;
+	}
+
+	@Nullable
+	public Path getPlatformJavaHome() {
+		val platformJavaHome = this.platformJavaHome;
+		if (platformJavaHome == null && parent != null)
+			return parent.getPlatformJavaHome();
+		return platformJavaHome;
+	}
+
+	private ClassNameSet getPlatformClasses() {
+		return PlatformClassIndex.get(getPlatformJavaHome()).getClasses();
+	}
+
+	/**
+	 * @return the superclass and interface edges of the class files in this class path and its JDK, read without
+	 * loading any classes
+	 */
+	public ClassHierarchy getClassHierarchy() {
+		ClassHierarchy classHierarchy = this.classHierarchy;
+		if (classHierarchy == null) {
+			synchronized (this) {
+				classHierarchy = this.classHierarchy;
+				if (classHierarchy == null)
+					this.classHierarchy = classHierarchy = new ClassHierarchy(this::readClassFile);
+			}
+		}
+		return classHierarchy;
+	}
+
+	/**
+	 * Platform classes are found first, then classes in parent class paths, as with class loader delegation
+	 */
+	@Nullable
+	private byte[] readClassFile(String internalName) throws IOException {
+		val platformClassFile = PlatformClassIndex.get(getPlatformJavaHome()).readClassFile(internalName);
+		if (platformClassFile != null)
+			return platformClassFile;
+		return readInputClassFile(internalName + ".class");
+	}
+
+	@Nullable
+	private byte[] readInputClassFile(String fileName) throws IOException {
+		if (parent != null) {
+			val classFile = parent.readInputClassFile(fileName);
+			if (classFile != null)
+				return classFile;
+		}
+
+		List<Path> inputPaths;
+		synchronized (this) {
+			inputPaths = new ArrayList<>(this.inputPaths);
+		}
+		for (Path path : inputPaths) {
+			if (Files.isDirectory(path)) {
+				val file = path.resolve(fileName);
+				if (Files.isRegularFile(file))
+					return Files.readAllBytes(file);
+			} else if (Files.isRegularFile(path)) {
+				val archive = getClassFileArchive(path);
+				val entry = archive == null ? null : archive.getEntry(fileName);
+				if (entry != null)
+					return entry.read();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the opened jar, or null if it can't be read with {@link ZipArchive}
+	 */
+	@Nullable
+	private ZipArchive getClassFileArchive(Path path) throws IOException {
+		ZipArchive archive = classFileArchives.get(path);
+		if (archive != null)
+			return archive;
+		try {
+			archive = ZipArchive.open(path);
+		} catch (ZipException e) {
+			return null;
+		}
+		val existing = classFileArchives.putIfAbsent(path, archive);
+		if (existing != null) {
+			archive.close();
+			return existing;
+		}
+		return archive;
+	}
+
+	/**
+	 * Returns whether the given class name exists in this class path or in the platform classes of its JDK
 	 *
 	 * @param className class name in JLS format: package1.package2.ClassName, package1.package2.ClassName$InnerClass
 	 * @return true if the class exists
@@ -69,7 +238,26 @@ public class ClassPath {
 	@Contract("null -> fail")
 	public boolean classExists(@NonNull String className) {
 		initialise();
-		return classes.contains(className) || (parent != null && parent.classExists(className));
+		return classes.contains(className) || (parent != null && parent.getMergedClasses().contains(className)) || getPlatformClasses().contains(className);
+	}
+
+	/**
+	 * Returns the classes directly in the given package, including the platform classes of its JDK
+	 * <p>
+	 * Inner classes found in source files are named with '.', so the classes in package "org.example.Outer" include
+	 * the inner classes of org.example.Outer declared in source files.
+	 *
+	 * @param packageName package name in JLS format: package1.package2, or "" for the default package
+	 * @return sorted class names in JLS format
+	 */
+	@Contract("null -> fail")
+	public List<String> getClassesInPackage(@NonNull String packageName) {
+		initialise();
+		val classes = new TreeSet<String>(this.classes.getClassesInPackage(packageName));
+		if (parent != null)
+			classes.addAll(parent.getMergedClasses().getClassesInPackage(packageName));
+		classes.addAll(getPlatformClasses().getClassesInPackage(packageName));
+		return new ArrayList<>(classes);
 	}
 
 	/**
@@ -79,11 +267,13 @@ public class ClassPath {
 	 * @return true if the path was added, false if the path already existed in this {@link ClassPath}
 	 */
 	@Contract("null -> fail")
-	public boolean addPath(@NonNull Path path) {
+	public synchronized boolean addPath(@NonNull Path path) {
 		path = path.normalize().toAbsolutePath();
 		val add = !parentHasPath(path) && inputPaths.add(path);
 		if (add && loaded)
-			loadPath(path);
+			classes = classes.with(loadPath(path));
+		if (add)
+			version.incrementAndGet();
 		return add;
 	}
 
@@ -98,81 +288,179 @@ public class ClassPath {
 	 */
 	private boolean parentHasPath(Path path) {
 		val parent = this.parent;
-		return parent != null && (parent.inputPaths.contains(path) || parent.parentHasPath(path));
+		return parent != null && parent.getMergedPaths().contains(path);
 	}
 
-	private void findPaths(ZipEntry e, ZipInputStream zis) {
+	private ClassNameSet getMergedClasses() {
+		initialise();
+		val version = this.version.get();
+		val inherited = parent == null ? ClassNameSet.EMPTY : parent.getMergedClasses();
+		val snapshot = mergedClasses;
+		if (snapshot != null && snapshot.version == version && snapshot.inherited == inherited)
+			return snapshot.value;
+
+		val own = classes;
+		ClassNameSet merged;
+		if (inherited.isEmpty())
+			merged = own;
+		else if (own.isEmpty())
+			merged = inherited;
+		else
+			merged = inherited.with(own.stream().collect(Collectors.toList()));
+		mergedClasses = new Snapshot<>(version, inherited, merged);
+		return merged;
+	}
+
+	private Set<Path> getMergedPaths() {
+		val version = this.version.get();
+		val inherited = parent == null ? Collections.<Path>emptySet() : parent.getMergedPaths();
+		val snapshot = mergedPaths;
+		if (snapshot != null && snapshot.version == version && snapshot.inherited == inherited)
+			return snapshot.value;
+
+		val merged = new HashSet<Path>(inherited);
+		synchronized (this) {
+			merged.addAll(inputPaths);
+		}
+		mergedPaths = new Snapshot<>(version, inherited, merged);
+		return merged;
+	}
+
+	private static void findPaths(ZipEntry e, ZipInputStream zis, Collection<String> classes) throws IOException {
 		val entryName = e.getName();
 		if (entryName.endsWith(".java"))
-			findJavaPaths(zis);
+			findJavaPaths(IOUtil.readFully(zis, e.getSize()), classes);
 
 		if (entryName.endsWith(".class"))
 			classes.add(JVMUtil.fileNameToClassName(entryName));
 	}
 
-	private void findJavaPaths(ZipInputStream zis) {
-		val parsed = JavaParser.parse(new InputStream() {
-			public int read(@NonNull byte[] b, int off, int len) throws IOException {
-				return zis.read(b, off, len);
-			}
+	private static void findPaths(ZipArchive.Entry entry, Collection<String> classes) throws IOException {
+		val entryName = entry.getName();
+		if (entryName.endsWith(".java"))
+			findJavaPaths(entry.read(), classes);
+
+		// class names come from the central directory, so .class entries are never inflated
+		if (entryName.endsWith(".class"))
+			classes.add(JVMUtil.fileNameToClassName(entryName));
+	}
 
-			public void close() throws IOException {}
+	private static void findJavaPaths(Path file, Collection<String> classes) throws IOException {
+		findJavaPaths(Files.readAllBytes(file), classes);
+	}
 
-			public int read() throws IOException {
-				return zis.read();
-			}
-		});
-		findJavaPaths(parsed);
+	private static void findJavaPaths(byte[] source, Collection<String> classes) {
+		val names = JavaTypeNameScanner.scan(new String(source, StandardCharsets.UTF_8));
+		if (names != null)
+			classes.addAll(names);
+		else
+			findJavaPaths(JavaParser.parse(new ByteArrayInputStream(source)), classes);
 	}
 
-	private void findJavaPaths(CompilationUnit compilationUnit) {
+	private static void findJavaPaths(CompilationUnit compilationUnit, Collection<String> classes) {
 		val typeNames = compilationUnit.getTypes();
 		val packageDeclaration = compilationUnit.getPackageDeclaration().orElse(null);
 		val prefix = packageDeclaration == null ? "" : packageDeclaration.getNameAsString() + '.';
 		for (TypeDeclaration<?> typeDeclaration : typeNames)
-			findJavaPaths(typeDeclaration, prefix);
+			findJavaPaths(typeDeclaration, prefix, classes);
 	}
 
-	private void findJavaPaths(TypeDeclaration<?> typeDeclaration, String packagePrefix) {
+	private static void findJavaPaths(TypeDeclaration<?> typeDeclaration, String packagePrefix, Collection<String> classes) {
 		val name = packagePrefix + typeDeclaration.getNameAsString();
 		classes.add(name);
 		for (val node : typeDeclaration.getChildNodes())
 			if (node instanceof TypeDeclaration)
-				findJavaPaths((TypeDeclaration<?>) node, name + '.');
+				findJavaPaths((TypeDeclaration<?>) node, name + '.', classes);
 	}
 
 	private void initialise() {
 		if (loaded)
 			return;
-		loaded = true;
-		for (Path path : inputPaths)
-			loadPath(path);
+		synchronized (this) {
+			if (loaded)
+				return;
+			// inputs are independent, so they are indexed concurrently and merged afterwards
+			val found = inputPaths.parallelStream().map(this::loadPath).collect(Collectors.toList());
+			val classes = new ArrayList<String>();
+			for (val names : found)
+				classes.addAll(names);
+			this.classes = ClassNameSet.of(classes);
+			loaded = true;
+			version.incrementAndGet();
+		}
 	}
 
+	/**
+	 * @return the names of the classes in the given path. May be called concurrently.
+	 */
 	@SneakyThrows
-	private void loadPath(Path path) {
-		if (Files.isDirectory(path))
-			Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-				@Override
-				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-					val entryName = path.relativize(file).toString().replace(File.separatorChar, '/');
-					if (entryName.endsWith(".java")) {
-						val parsed = JavaParser.parse(file);
-						findJavaPaths(parsed);
-					}
-					return super.visitFile(file, attrs);
-				}
+	private Collection<String> loadPath(Path path) {
+		val classes = new ArrayList<String>();
+		val indexDirectory = getIndexDirectory();
+		if (indexDirectory != null) {
+			val index = ClassPathIndex.load(indexDirectory, path);
+			index.refresh(ClassPath::loadJar, ClassPath::findJavaPaths);
+			index.save();
+			index.addClassNamesTo(classes);
+		} else if (Files.isDirectory(path)) {
+			List<List<String>> found = ParallelFileWalker.walk(path, (file, attributes) -> {
+				if (!file.getFileName().toString().endsWith(".java"))
+					return null;
+				List<String> names = new ArrayList<>();
+				findJavaPaths(file, names);
+				return names;
 			});
-		else if (Files.isRegularFile(path))
-			try (val zis = new ZipInputStream(Files.newInputStream(path))) {
-				ZipEntry e;
-				while ((e = zis.getNextEntry()) != null) {
-					try {
-						findPaths(e, zis);
-					} finally {
-						zis.closeEntry();
-					}
+			for (val names : found)
+				classes.addAll(names);
+		} else if (Files.isRegularFile(path)) {
+			loadJar(path, classes);
+		}
+		return classes;
+	}
+
+	private static void loadJar(Path path, Collection<String> classes) throws IOException {
+		ZipArchive opened;
+		try {
+			opened = ZipArchive.open(path);
+		} catch (ZipException e) {
+			loadJarSequentially(path, classes);
+			return;
+		}
+
+		try (ZipArchive archive = opened) {
+			for (val entry : archive.getEntries())
+				findPaths(entry, classes);
+		}
+	}
+
+	private static void loadJarSequentially(Path path, Collection<String> classes) throws IOException {
+		try (val zis = new ZipInputStream(Files.newInputStream(path))) {
+			ZipEntry e;
+			while ((e = zis.getNextEntry()) != null) {
+				try {
+					findPaths(e, zis, classes);
+				} finally {
+					zis.closeEntry();
 				}
 			}
+		}
+	}
+
+	/**
+	 * Value merged from this class path and its parent's snapshot, valid while neither changes
+	 */
+	private static class Snapshot<T> {
+		final long version;
+		/**
+		 * The parent's merged value this was built from, compared by identity
+		 */
+		final T inherited;
+		final T value;
+
+		Snapshot(long version, T inherited, T value) {
+			this.version = version;
+			this.inherited = inherited;
+			this.value = value;
+		}
 	}
 }
@@ -0,0 +1,108 @@
+package org.minimallycorrect.javatransformer.api;
+
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Timings and sizes recorded while transforming one entry of a jar or folder, see
+ * {@link JavaTransformer#setMetricsListener(MetricsListener)}
+ * <p>
+ * Phase times are exclusive: time spent parsing a class while a transformer is running counts towards
+ * {@link Phase#PARSE} and not {@link Phase#TRANSFORM}. Transformer times include everything done while each transformer
+ * runs.
+ */
+@Getter
+@ToString
+public class EntryMetrics {
+	private final String relativeName;
+	private final Outcome outcome;
+	/**
+	 * Whether the class file or source was parsed, which doesn't happen when the entry is skipped or cached
+	 */
+	private final boolean parsed;
+	/**
+	 * Size of the entry when it was read, or 0 if it was copied to the output without being read
+	 */
+	private final long bytesIn;
+	/**
+	 * Size of the transformed entry, or 0 if it was copied to the output without being read
+	 */
+	private final long bytesOut;
+	@Getter(AccessLevel.NONE)
+	private final long[] phaseNanos;
+	/**
+	 * Time spent in each transformer which ran on this entry, in the order they ran
+	 */
+	private final Map<Transformer, Long> transformerNanos;
+
+	public EntryMetrics(String relativeName, Outcome outcome, boolean parsed, long bytesIn, long bytesOut, long[] phaseNanos, Map<Transformer, Long> transformerNanos) {
+		this.relativeName = relativeName;
+		this.outcome = outcome;
+		this.parsed = parsed;
+		this.bytesIn = bytesIn;
+		this.bytesOut = bytesOut;
+		this.phaseNanos = phaseNanos;
+		this.transformerNanos = transformerNanos;
+	}
+
+	public long getNanos(Phase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+
+	public long getTotalNanos() {
+		long total = 0;
+		for (long nanos : phaseNanos)
+			total += nanos;
+		return total;
+	}
+
+	public enum Phase {
+		/**
+		 * Reading and inflating the entry
+		 */
+		READ,
+		/**
+		 * Reading class files with ASM, or parsing sources with JavaParser
+		 */
+		PARSE,
+		/**
+		 * Running {@link Transformer#transform(ClassInfo)}, excluding the other phases it causes
+		 */
+		TRANSFORM,
+		/**
+		 * Finding stack frames for code fragments
+		 */
+		ANALYSIS,
+		/**
+		 * Writing class files with ASM, or printing sources
+		 */
+		SERIALIZE,
+		/**
+		 * Writing or copying the entry to the output
+		 */
+		WRITE
+	}
+
+	public enum Outcome {
+		/**
+		 * Not a class file or source
+		 */
+		RESOURCE,
+		/**
+		 * A class file or source which no transformer targets
+		 */
+		SKIPPED,
+		/**
+		 * Result reused from the {@link TransformCache}
+		 */
+		CACHED,
+		/**
+		 * Transformers ran but didn't change the entry
+		 */
+		UNCHANGED,
+		MODIFIED
+	}
+}
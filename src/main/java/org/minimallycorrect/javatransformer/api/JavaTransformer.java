@@ -3,6 +3,7 @@ package org.minimallycorrect.javatransformer.api;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -19,18 +20,20 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.Setter;
@@ -38,9 +41,6 @@ import lombok.ToString;
 import lombok.val;
 
 import org.jetbrains.annotations.Nullable;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.tree.ClassNode;
 
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.ast.CompilationUnit;
@@ -48,50 +48,77 @@ import com.github.javaparser.ast.body.TypeDeclaration;
 
 import org.minimallycorrect.javatransformer.internal.ByteCodeInfo;
 import org.minimallycorrect.javatransformer.internal.SourceInfo;
-import org.minimallycorrect.javatransformer.internal.asm.FilteringClassWriter;
+import org.minimallycorrect.javatransformer.internal.asm.ConstantPoolScanner;
+import org.minimallycorrect.javatransformer.internal.asm.TieredClassNode;
 import org.minimallycorrect.javatransformer.internal.util.CachingSupplier;
 import org.minimallycorrect.javatransformer.internal.util.DefineClass;
+import org.minimallycorrect.javatransformer.internal.util.IOUtil;
 import org.minimallycorrect.javatransformer.internal.util.JVMUtil;
+import org.minimallycorrect.javatransformer.internal.util.MetricsRecorder;
 import org.minimallycorrect.javatransformer.internal.util.NodeUtil;
+import org.minimallycorrect.javatransformer.internal.util.OrderedTaskQueue;
+import org.minimallycorrect.javatransformer.internal.util.TargetIndex;
+import org.minimallycorrect.javatransformer.internal.zip.ZipArchive;
+import org.minimallycorrect.javatransformer.internal.zip.ZipWriter;
 
 @Getter
 @Setter
 @ToString
 public class JavaTransformer {
 	private final List<Transformer> transformers = new ArrayList<>();
-	private final SimpleMultiMap<String, Transformer> classTransformers = new SimpleMultiMap<>();
-	private final Map<String, byte[]> transformedFiles = new HashMap<>();
+	@Getter(AccessLevel.NONE)
+	private final TargetIndex<Transformer> targetedTransformers = new TargetIndex<>();
+	/**
+	 * Finds classes which may have annotations targeted by {@link #targetedTransformers}, or null if there are none
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@Nullable
+	private ConstantPoolScanner annotationScanner;
+	private final Map<String, byte[]> transformedFiles = new LinkedHashMap<>();
 	private final List<Consumer<JavaTransformer>> afterTransform = new ArrayList<>();
 	private ClassPath classPath = new ClassPath();
+	/**
+	 * Number of threads used to transform entries when loading a jar or folder. Values less than 2 transform entries on the calling thread.
+	 * <p>
+	 * Results are always stored in the order the entries were read, so output is the same whatever the parallelism.
+	 */
+	private int parallelism = 1;
+	/**
+	 * When true, {@link #transform(Path, Path)} writes each entry to the output as soon as it has been transformed instead
+	 * of first collecting the whole output in {@link #transformedFiles}.
+	 * <p>
+	 * {@link #afterTransform} handlers run once all entries have been written, and only see entries accepted by
+	 * {@link #retainTransformedFiles}.
+	 */
+	private boolean streaming;
+	/**
+	 * Selects by relative file name which entries are kept in {@link #transformedFiles} when {@link #streaming}, for example
+	 * so that they can be used by {@link #defineClass(ClassLoader, String)} in an {@link #afterTransform} handler
+	 */
+	@NonNull
+	private Predicate<String> retainTransformedFiles = it -> false;
+	/**
+	 * When set, results of transforming class and source files are stored in and reused from this cache. Only used for
+	 * files whose transformers all have a {@link Transformer#getVersion() version}.
+	 */
+	@Nullable
+	private TransformCache cache;
+	/**
+	 * When set, receives timings and sizes for each entry of a jar or folder which is transformed. Recording is skipped
+	 * entirely when this is null.
+	 *
+	 * @see MetricsSummary
+	 */
+	@Nullable
+	private MetricsListener metricsListener;
 
-	private static byte[] readFully(InputStream is) {
-		byte[] output = {};
-		int position = 0;
-		while (true) {
-			int bytesToRead;
-			if (position >= output.length) {
-				bytesToRead = output.length + 4096;
-				if (output.length < position + bytesToRead) {
-					output = Arrays.copyOf(output, position + bytesToRead);
-				}
-			} else {
-				bytesToRead = output.length - position;
-			}
-			int bytesRead;
-			try {
-				bytesRead = is.read(output, position, bytesToRead);
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
-			}
-			if (bytesRead < 0) {
-				if (output.length != position) {
-					output = Arrays.copyOf(output, position);
-				}
-				break;
-			}
-			position += bytesRead;
+	private static byte[] readFully(InputStream is, long expectedSize) {
+		try {
+			return IOUtil.readFully(is, expectedSize);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
-		return output;
 	}
 
 	/**
@@ -121,64 +148,107 @@ public class JavaTransformer {
 	}
 
 	public Map<String, List<Transformer>> getClassTransformers() {
-		return Collections.unmodifiableMap(classTransformers.map);
+		return Collections.unmodifiableMap(targetedTransformers.getClasses());
 	}
 
 	public void save(@NonNull Path path) {
-		switch (PathType.of(path)) {
-			case JAR:
-				saveJar(path);
-				break;
-			case FOLDER:
-				saveFolder(path);
-				break;
+		try (Output output = Output.open(path)) {
+			for (val entry : transformedFiles.entrySet())
+				output.write(entry.getKey(), entry.getValue());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
 
 	public void load(@NonNull Path path) {
-		load(path, true);
+		load(path, this::saveTransformedResult);
 	}
 
 	public void parse(@NonNull Path path) {
-		load(path, false);
+		load(path, null);
+	}
+
+	private void load(@NonNull Path path, @Nullable ResultConsumer resultConsumer) {
+		loadWithoutHandlers(path, resultConsumer);
+		finishMetrics();
+		afterTransform.forEach(handler -> handler.accept(this));
 	}
 
-	private void load(@NonNull Path path, boolean saveTransformedResults) {
+	private void loadWithoutHandlers(@NonNull Path path, @Nullable ResultConsumer resultConsumer) {
+		// nothing will be transformed or written, so the input doesn't need to be opened
+		if (resultConsumer == null && metricsListener == null && transformers.isEmpty() && targetedTransformers.isEmpty())
+			return;
+
 		switch (PathType.of(path)) {
 			case JAR:
-				loadJar(path, saveTransformedResults);
+				loadJar(path, resultConsumer);
 				break;
 			case FOLDER:
-				loadFolder(path, saveTransformedResults);
+				loadFolder(path, resultConsumer);
 				break;
 		}
-		afterTransform.forEach(handler -> handler.accept(this));
 	}
 
 	public void transform(@NonNull Path load, @NonNull Path save) {
-		load(load, true);
-		save(save);
+		if (streaming) {
+			transformStreaming(load, save);
+		} else {
+			load(load);
+			save(save);
+		}
 
 		clear();
 	}
 
-	private void loadFolder(Path input, boolean saveTransformedResults) {
-		try {
-			val searchPath = classPath.createChildWithExtraPaths(Collections.singleton(input));
+	private void transformStreaming(Path load, Path save) {
+		try (Output output = Output.open(save)) {
+			loadWithoutHandlers(load, new ResultConsumer() {
+				@Override
+				public void accept(String relativeName, byte[] bytes) throws IOException {
+					output.write(relativeName, bytes);
+					if (retainTransformedFiles.test(relativeName))
+						saveTransformedResult(relativeName, bytes);
+				}
+
+				@Override
+				public boolean canCopy(String relativeName) {
+					return output.canCopy() && !retainTransformedFiles.test(relativeName);
+				}
+
+				@Override
+				public void copy(ZipArchive.Entry entry) throws IOException {
+					output.copy(entry);
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		finishMetrics();
+		afterTransform.forEach(handler -> handler.accept(this));
+	}
+
+	private void finishMetrics() {
+		val metricsListener = this.metricsListener;
+		if (metricsListener != null)
+			metricsListener.onFinished();
+	}
+
+	private void loadFolder(Path input, @Nullable ResultConsumer resultConsumer) {
+		try (ClassPath searchPath = classPath.createChildWithExtraPaths(Collections.singleton(input)); OrderedTaskQueue<TransformResult> queue = createTransformQueue(resultConsumer)) {
 			Files.walkFileTree(input, new SimpleFileVisitor<Path>() {
 				@Override
 				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-					val relativeName = input.relativize(file).toString();
+					val relativeName = input.relativize(file).toString().replace('\\', '/');
+					if (canSkip(relativeName, resultConsumer))
+						return FileVisitResult.CONTINUE;
 
-					val supplier = transformBytes(() -> {
+					submitTransform(queue, () -> {
 						try {
 							return Files.readAllBytes(file);
 						} catch (IOException e) {
 							throw new UncheckedIOException(e);
 						}
-					}, relativeName, searchPath);
-
-					saveTransformedResult(relativeName, supplier, saveTransformedResults);
+					}, relativeName, searchPath, resultConsumer);
 
 					return FileVisitResult.CONTINUE;
 				}
@@ -188,53 +258,151 @@ public class JavaTransformer {
 		}
 	}
 
-	private void loadJar(Path p, boolean saveTransformedResults) {
+	private void loadJar(Path p, @Nullable ResultConsumer resultConsumer) {
+		ZipArchive opened;
+		try {
+			opened = ZipArchive.open(p);
+		} catch (ZipException e) {
+			loadJarSequentially(p, resultConsumer);
+			return;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		// the queue is closed first, so all entries have been transformed before the archive is closed
+		try (ZipArchive archive = opened; ClassPath searchPath = classPath.createChildWithExtraPaths(Collections.singleton(p)); OrderedTaskQueue<TransformResult> queue = createTransformQueue(resultConsumer)) {
+			for (val entry : archive.getEntries())
+				if (!canSkip(entry.getName(), resultConsumer))
+					submitTransform(queue, entry, entry.getName(), searchPath, resultConsumer);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void loadJarSequentially(Path p, @Nullable ResultConsumer resultConsumer) {
 		ZipEntry entry;
-		try (ZipInputStream is = new ZipInputStream(new BufferedInputStream(new FileInputStream(p.toFile())))) {
-			val searchPath = new ClassPath(Collections.singletonList(p));
+		try (ZipInputStream is = new ZipInputStream(new BufferedInputStream(new FileInputStream(p.toFile()))); ClassPath searchPath = classPath.createChildWithExtraPaths(Collections.singleton(p)); OrderedTaskQueue<TransformResult> queue = createTransformQueue(resultConsumer)) {
 			while ((entry = is.getNextEntry()) != null) {
-				saveTransformedResult(entry.getName(), transformBytes(() -> readFully(is), entry.getName(), searchPath), saveTransformedResults);
+				if (canSkip(entry.getName(), resultConsumer))
+					continue;
+				Supplier<byte[]> data;
+				val size = entry.getSize();
+				if (queue.isParallel()) {
+					// the stream can only be read from this thread
+					val bytes = readFully(is, size);
+					data = () -> bytes;
+				} else {
+					// cached as it may be needed again after checking which transformers target the class
+					data = CachingSupplier.of(() -> readFully(is, size));
+				}
+				submitTransform(queue, data, entry.getName(), searchPath, resultConsumer);
 			}
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 
-	private void saveTransformedResult(String relativeName, Supplier<byte[]> supplier, boolean saveTransformedResults) {
-		if (saveTransformedResults)
-			transformedFiles.put(relativeName.replace('\\', '/'), supplier.get());
+	/**
+	 * When only parsing, entries which no transformer will run on don't need to be read or queued at all
+	 */
+	private boolean canSkip(String relativeName, @Nullable ResultConsumer resultConsumer) {
+		return resultConsumer == null && metricsListener == null && !isTransformTarget(relativeName);
 	}
 
-	private void saveFolder(Path output) {
-		transformedFiles.forEach(((fileName, bytes) -> {
-			Path outputFile = output.resolve(fileName);
-
-			try {
-				if (Files.exists(outputFile)) {
-					throw new IOException("Output file already exists: " + outputFile);
-				}
-				Files.createDirectories(outputFile.getParent());
-				Files.write(outputFile, bytes);
-			} catch (IOException e) {
-				throw new UncheckedIOException(e);
-			}
-		}));
+	private boolean isTransformTarget(String relativeName) {
+		if (!relativeName.endsWith(".class") && !relativeName.endsWith(".java"))
+			return false;
+		val className = JVMUtil.fileNameToClassName(relativeName);
+		return !className.endsWith(".package-info") && shouldTransform(className);
 	}
 
-	private void saveJar(Path jar) {
-		try (ZipOutputStream os = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(jar.toFile())))) {
-			transformedFiles.forEach(((relativeName, bytes) -> {
+	private OrderedTaskQueue<TransformResult> createTransformQueue(@Nullable ResultConsumer resultConsumer) {
+		return new OrderedTaskQueue<>(parallelism, (relativeName, result) -> {
+			val metrics = result.metrics;
+			long start = metrics == null ? 0 : System.nanoTime();
+			val data = result.data;
+			if (resultConsumer != null && data != null) {
 				try {
-					os.putNextEntry(new ZipEntry(relativeName));
-					os.write(bytes);
-					os.closeEntry();
+					if (data instanceof ZipArchive.Entry)
+						resultConsumer.copy((ZipArchive.Entry) data);
+					else
+						resultConsumer.accept(relativeName, data.get());
 				} catch (IOException e) {
 					throw new UncheckedIOException(e);
 				}
-			}));
-		} catch (IOException e) {
-			e.printStackTrace();
+			}
+			val metricsListener = this.metricsListener;
+			if (metrics != null && metricsListener != null) {
+				metrics.addNanos(EntryMetrics.Phase.WRITE, System.nanoTime() - start);
+				metricsListener.onEntry(metrics.toEntryMetrics());
+			}
+		});
+	}
+
+	private void submitTransform(OrderedTaskQueue<TransformResult> queue, Supplier<byte[]> data, String relativeName, ClassPath searchPath, @Nullable ResultConsumer resultConsumer) {
+		if (metricsListener != null) {
+			submitMeasuredTransform(queue, data, relativeName, searchPath, resultConsumer);
+			return;
 		}
+
+		queue.submit(relativeName, () -> {
+			val supplier = transformBytes(data, relativeName, searchPath);
+			if (resultConsumer == null)
+				return new TransformResult(null, null);
+
+			// unchanged jar entries can be copied without inflating and deflating them again
+			if (supplier == data && data instanceof ZipArchive.Entry && resultConsumer.canCopy(relativeName))
+				return new TransformResult(data, null);
+
+			val bytes = supplier.get();
+			return new TransformResult(() -> bytes, null);
+		});
+	}
+
+	/**
+	 * Same as {@link #submitTransform}, recording metrics for the entry which are passed to the {@link #metricsListener}
+	 * once it has been written
+	 */
+	private void submitMeasuredTransform(OrderedTaskQueue<TransformResult> queue, Supplier<byte[]> data, String relativeName, ClassPath searchPath, @Nullable ResultConsumer resultConsumer) {
+		queue.submit(relativeName, () -> {
+			MetricsRecorder metrics = new MetricsRecorder(relativeName);
+			metrics.attach();
+			try {
+				Supplier<byte[]> measuredData = () -> {
+					EntryMetrics.Phase previous = metrics.enter(EntryMetrics.Phase.READ);
+					try {
+						byte[] bytes = data.get();
+						metrics.setBytesIn(bytes.length);
+						return bytes;
+					} finally {
+						metrics.exit(previous);
+					}
+				};
+				Supplier<byte[]> supplier = transformBytes(measuredData, relativeName, searchPath);
+				if (resultConsumer == null)
+					return new TransformResult(null, metrics);
+
+				// unchanged jar entries can be copied without inflating and deflating them again
+				if (supplier == measuredData && data instanceof ZipArchive.Entry && resultConsumer.canCopy(relativeName))
+					return new TransformResult(data, metrics);
+
+				EntryMetrics.Phase previous = metrics.enter(EntryMetrics.Phase.SERIALIZE);
+				byte[] bytes;
+				try {
+					bytes = supplier.get();
+				} finally {
+					metrics.exit(previous);
+				}
+				metrics.setBytesOut(bytes.length);
+				return new TransformResult(() -> bytes, metrics);
+			} finally {
+				metrics.detach();
+			}
+		});
+	}
+
+	private void saveTransformedResult(String relativeName, byte[] bytes) {
+		transformedFiles.put(relativeName, bytes);
 	}
 
 	public void clear() {
@@ -247,15 +415,24 @@ public class JavaTransformer {
 		}
 
 		for (String name : t.getTargetClasses()) {
-			classTransformers.put(name, t);
+			targetedTransformers.addClass(name, t);
 		}
+		for (String name : t.getTargetPackages())
+			targetedTransformers.addPackage(name, t);
+		for (String pattern : t.getTargetPatterns())
+			targetedTransformers.addPattern(pattern, t);
+		val annotations = t.getTargetAnnotations();
+		for (String annotation : annotations)
+			targetedTransformers.addAnnotation(annotation, t);
+		if (!annotations.isEmpty())
+			annotationScanner = ConstantPoolScanner.forAnnotations(targetedTransformers.getAnnotations());
 	}
 
 	public void addTransformer(@NonNull String s, @NonNull Transformer t) {
-		if (classTransformers.get(s).contains(t)) {
+		if (targetedTransformers.containsClass(s, t)) {
 			throw new IllegalArgumentException("Transformer " + t + " has already been added for class " + s);
 		}
-		classTransformers.put(s, t);
+		targetedTransformers.addClass(s, t);
 	}
 
 	public void addTransformer(@NonNull Transformer t) {
@@ -271,12 +448,22 @@ public class JavaTransformer {
 	}
 
 	public Supplier<byte[]> transformJava(@NonNull Supplier<byte[]> data, @NonNull String name, ClassPath classPath) {
-		if (!shouldTransform(name))
+		if (!shouldTransform(name)) {
+			recordOutcome(EntryMetrics.Outcome.SKIPPED);
 			return data;
+		}
 
 		CachingSupplier<TypeDeclaration<?>> supplier = CachingSupplier.of(() -> {
 			byte[] bytes = data.get();
-			CompilationUnit cu = JavaParser.parse(new ByteArrayInputStream(bytes));
+			MetricsRecorder metrics = MetricsRecorder.current();
+			EntryMetrics.Phase previous = metrics == null ? null : metrics.enter(EntryMetrics.Phase.PARSE);
+			CompilationUnit cu;
+			try {
+				cu = JavaParser.parse(new ByteArrayInputStream(bytes));
+			} finally {
+				if (metrics != null)
+					metrics.exit(previous);
+			}
 
 			List<String> tried = new ArrayList<>();
 			String packageName = NodeUtil.qualifiedName(cu.getPackageDeclaration().get().getName());
@@ -295,58 +482,115 @@ public class JavaTransformer {
 				+ "\nClass data: " + new String(bytes, Charset.forName("UTF-8")));
 		});
 
-		transformClassInfo(new SourceInfo(supplier, name, classPath));
+		if (!transformClassInfo(new SourceInfo(supplier, name, classPath))) {
+			recordOutcome(EntryMetrics.Outcome.SKIPPED);
+			return data;
+		}
 
+		recordOutcome(supplier.isCached() ? EntryMetrics.Outcome.MODIFIED : EntryMetrics.Outcome.UNCHANGED);
 		return supplier.isCached() ? () -> supplier.get().getParentNode().get().toString().getBytes(Charset.forName("UTF-8")) : data;
 	}
 
 	public Supplier<byte[]> transformClass(@NonNull Supplier<byte[]> data, @NonNull String name) {
-		if (!shouldTransform(name))
+		return transformClass(data, name, classPath);
+	}
+
+	/**
+	 * @param data      may be requested more than once
+	 * @param classPath used to find common superclasses if frames need to be computed
+	 */
+	public Supplier<byte[]> transformClass(@NonNull Supplier<byte[]> data, @NonNull String name, ClassPath classPath) {
+		if (!shouldTransform(name)) {
+			recordOutcome(EntryMetrics.Outcome.SKIPPED);
 			return data;
+		}
 
-		Holder<ClassReader> readerHolder = new Holder<>();
-		CachingSupplier<ClassNode> supplier = CachingSupplier.of(() -> {
-			ClassNode node = new ClassNode();
-			ClassReader reader = new ClassReader(data.get());
-			reader.accept(node, ClassReader.EXPAND_FRAMES);
+		// when only annotation targets could match, classes which don't refer to their annotations aren't parsed
+		Supplier<byte[]> input = data;
+		val annotationScanner = this.annotationScanner;
+		if (annotationScanner != null && transformers.isEmpty() && !targetedTransformers.matchesName(name)) {
+			val bytes = data.get();
+			if (!annotationScanner.containsAny(bytes)) {
+				recordOutcome(EntryMetrics.Outcome.SKIPPED);
+				return data;
+			}
+			input = () -> bytes;
+		}
 
-			readerHolder.value = reader;
+		// code is only read if a transformer needs it
+		val supplier = new TieredClassNode(input);
 
-			return node;
-		});
+		val byteCodeInfo = new ByteCodeInfo(supplier, name, new HashMap<>());
+		byteCodeInfo.setClassPath(classPath);
+		if (!transformClassInfo(byteCodeInfo)) {
+			recordOutcome(EntryMetrics.Outcome.SKIPPED);
+			return data;
+		}
+
+		if (!supplier.isRead()) {
+			recordOutcome(EntryMetrics.Outcome.UNCHANGED);
+			return data;
+		}
 
-		val filters = new HashMap<String, String>();
+		recordOutcome(EntryMetrics.Outcome.MODIFIED);
+		return byteCodeInfo::toByteArray;
+	}
 
-		int flags_ = ClassWriter.COMPUTE_MAXS;
-		{
-			val byteCodeInfo = new ByteCodeInfo(supplier, name, filters);
-			transformClassInfo(byteCodeInfo);
-			if (byteCodeInfo.hasChangedMethodControlFlow) {
-				flags_ |= ClassWriter.COMPUTE_FRAMES;
-			}
+	/**
+	 * @return false if no transformers targeted the class
+	 */
+	private boolean transformClassInfo(ClassInfo editor) {
+		List<Transformer> targeted;
+		if (targetedTransformers.hasAnnotationTargets()) {
+			val annotations = new ArrayList<String>();
+			for (Annotation annotation : editor.getAnnotations())
+				annotations.add(annotation.type.getClassName());
+			targeted = targetedTransformers.get(editor.getName(), annotations);
+		} else {
+			targeted = targetedTransformers.get(editor.getName());
 		}
-		final int flags = flags_;
+		transformers.forEach((x) -> runTransformer(x, editor));
+		targeted.forEach((it) -> runTransformer(it, editor));
+		return !transformers.isEmpty() || !targeted.isEmpty();
+	}
 
-		if (!supplier.isCached())
-			return data;
+	private void runTransformer(Transformer transformer, ClassInfo editor) {
+		if (parallelism <= 1 || transformer.isThreadSafe()) {
+			runTransformerMeasured(transformer, editor);
+			return;
+		}
 
-		return () -> {
-			if (readerHolder.value == null)
-				throw new IllegalStateException();
-			FilteringClassWriter classWriter = new FilteringClassWriter(readerHolder.value, flags);
-			classWriter.filters.putAll(filters);
-			supplier.get().accept(classWriter);
-			return classWriter.toByteArray();
-		};
+		//noinspection SynchronizationOnLocalVariableOrMethodParameter
+		synchronized (transformer) {
+			runTransformerMeasured(transformer, editor);
+		}
 	}
 
-	private void transformClassInfo(ClassInfo editor) {
-		transformers.forEach((x) -> x.transform(editor));
-		classTransformers.get(editor.getName()).forEach((it) -> it.transform(editor));
+	private static void runTransformerMeasured(Transformer transformer, ClassInfo editor) {
+		val metrics = MetricsRecorder.current();
+		if (metrics == null) {
+			transformer.transform(editor);
+			return;
+		}
+
+		val start = System.nanoTime();
+		val previous = metrics.enter(EntryMetrics.Phase.TRANSFORM);
+		try {
+			transformer.transform(editor);
+		} finally {
+			metrics.exit(previous);
+			metrics.addTransformerNanos(transformer, System.nanoTime() - start);
+		}
+	}
+
+	private static void recordOutcome(EntryMetrics.Outcome outcome) {
+		val metrics = MetricsRecorder.current();
+		if (metrics != null)
+			metrics.setOutcome(outcome);
 	}
 
 	private boolean shouldTransform(String className) {
-		return !transformers.isEmpty() || !classTransformers.get(className).isEmpty();
+		return !transformers.isEmpty() || targetedTransformers.matches(className);
 	}
 
 	Supplier<byte[]> transformBytes(@Nullable Supplier<byte[]> dataSupplier, String relativeName, @Nullable ClassPath classPath) {
@@ -357,18 +601,86 @@ public class JavaTransformer {
 			String className = JVMUtil.fileNameToClassName(relativeName);
 
 			// package-info files do not contain classes
-			if (className.endsWith(".package-info"))
+			if (className.endsWith(".package-info")) {
+				recordOutcome(EntryMetrics.Outcome.RESOURCE);
 				return dataSupplier;
+			}
+
+			val cache = this.cache;
+			// input is only read for the cache key if a transformer will run on it
+			if (cache != null && dataSupplier != null && shouldTransform(className)) {
+				val fingerprint = getFingerprint(className);
+				if (fingerprint != null)
+					return transformCached(cache, fingerprint, dataSupplier, relativeName, className, classPath);
+			}
 
 			if (isClass)
-				return transformClass(dataSupplier, className);
+				return transformClass(dataSupplier, className, classPath == null ? this.classPath : classPath);
 
 			return transformJava(dataSupplier, className, classPath);
 		}
 
+		recordOutcome(EntryMetrics.Outcome.RESOURCE);
 		return dataSupplier;
 	}
 
+	private Supplier<byte[]> transformCached(TransformCache cache, String fingerprint, Supplier<byte[]> dataSupplier, String relativeName, String className, @Nullable ClassPath classPath) {
+		val input = dataSupplier.get();
+		val key = cache.getKey(relativeName, input, fingerprint);
+		// unchanged jar entries are returned as they are so they can still be copied, other suppliers may not be re-readable
+		Supplier<byte[]> unchanged = dataSupplier instanceof ZipArchive.Entry ? dataSupplier : () -> input;
+
+		val cached = cache.get(key);
+		if (cached != null)
+			recordOutcome(EntryMetrics.Outcome.CACHED);
+		if (cached == TransformCache.UNCHANGED)
+			return unchanged;
+		if (cached != null)
+			return () -> cached;
+
+		Supplier<byte[]> data = () -> input;
+		val result = relativeName.endsWith(".class") ? transformClass(data, className, classPath == null ? this.classPath : classPath) : transformJava(data, className, classPath);
+		if (result == data) {
+			cache.put(key, null);
+			return unchanged;
+		}
+		val metrics = MetricsRecorder.current();
+		val previous = metrics == null ? null : metrics.enter(EntryMetrics.Phase.SERIALIZE);
+		byte[] transformed;
+		try {
+			transformed = result.get();
+		} finally {
+			if (metrics != null)
+				metrics.exit(previous);
+		}
+		cache.put(key, transformed);
+		return () -> transformed;
+	}
+
+	/**
+	 * @return the transformers which will run on the given class and their versions, or null if any has no version
+	 */
+	@Nullable
+	private String getFingerprint(String className) {
+		val fingerprint = new StringBuilder();
+		for (Transformer transformer : transformers)
+			if (!appendVersion(fingerprint, transformer))
+				return null;
+		// transformers targeting annotations may run, which is only known once the class is read
+		for (Transformer transformer : targetedTransformers.getCandidates(className))
+			if (!appendVersion(fingerprint, transformer))
+				return null;
+		return fingerprint.toString();
+	}
+
+	private static boolean appendVersion(StringBuilder fingerprint, Transformer transformer) {
+		val version = transformer.getVersion();
+		if (version == null)
+			return false;
+		fingerprint.append(transformer.getClass().getName()).append(' ').append(version).append('\n');
+		return true;
+	}
+
 	public Class<?> defineClass(ClassLoader classLoader, String name) {
 		byte[] result = Objects.requireNonNull(transformedFiles.get(JVMUtil.classNameToFileName(name)));
 		return DefineClass.defineClass(classLoader, name, result);
@@ -392,24 +704,113 @@ public class JavaTransformer {
 		}
 	}
 
-	private static class SimpleMultiMap<K, T> {
-		private final Map<K, List<T>> map = new HashMap<>();
+	/**
+	 * Result of transforming an entry, passed to the queue's consumer in the order entries were read
+	 */
+	private static class TransformResult {
+		/**
+		 * Transformed bytes or the unchanged jar entry to copy, or null if results aren't being written
+		 */
+		@Nullable
+		final Supplier<byte[]> data;
+		/**
+		 * Metrics recorded while transforming the entry, or null if there is no {@link JavaTransformer#metricsListener}
+		 */
+		@Nullable
+		final MetricsRecorder metrics;
+
+		TransformResult(@Nullable Supplier<byte[]> data, @Nullable MetricsRecorder metrics) {
+			this.data = data;
+			this.metrics = metrics;
+		}
+	}
 
-		public void put(K key, T value) {
-			map.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+	/**
+	 * Receives the result of transforming each entry while loading
+	 */
+	private interface ResultConsumer {
+		void accept(String relativeName, byte[] bytes) throws IOException;
+
+		/**
+		 * @return true if an unchanged jar entry with the given name should be passed to {@link #copy(ZipArchive.Entry)} instead of being read
+		 */
+		default boolean canCopy(String relativeName) {
+			return false;
 		}
 
-		public List<T> get(K key) {
-			List<T> values = map.get(key);
-			return values == null ? Collections.emptyList() : values;
+		default void copy(ZipArchive.Entry entry) throws IOException {
+			accept(entry.getName(), entry.read());
 		}
+	}
 
-		public String toString() {
-			return map.toString();
+	private abstract static class Output implements Closeable {
+		static Output open(Path path) throws IOException {
+			switch (PathType.of(path)) {
+				case JAR:
+					return new JarOutput(path);
+				case FOLDER:
+					return new FolderOutput(path);
+			}
+			throw new IllegalArgumentException(path.toString());
+		}
+
+		abstract void write(String relativeName, byte[] bytes) throws IOException;
+
+		boolean canCopy() {
+			return false;
+		}
+
+		void copy(ZipArchive.Entry entry) throws IOException {
+			write(entry.getName(), entry.read());
 		}
 	}
 
-	private static class Holder<T> {
-		public T value;
+	private static class JarOutput extends Output {
+		private final ZipWriter zipWriter;
+
+		JarOutput(Path jar) throws IOException {
+			zipWriter = new ZipWriter(new BufferedOutputStream(new FileOutputStream(jar.toFile())));
+		}
+
+		@Override
+		void write(String relativeName, byte[] bytes) throws IOException {
+			zipWriter.write(relativeName, bytes);
+		}
+
+		@Override
+		boolean canCopy() {
+			return true;
+		}
+
+		@Override
+		void copy(ZipArchive.Entry entry) throws IOException {
+			zipWriter.copy(entry);
+		}
+
+		@Override
+		public void close() throws IOException {
+			zipWriter.close();
+		}
+	}
+
+	private static class FolderOutput extends Output {
+		private final Path output;
+
+		FolderOutput(Path output) {
+			this.output = output;
+		}
+
+		@Override
+		void write(String relativeName, byte[] bytes) throws IOException {
+			Path outputFile = output.resolve(relativeName);
+			if (Files.exists(outputFile)) {
+				throw new IOException("Output file already exists: " + outputFile);
+			}
+			Files.createDirectories(outputFile.getParent());
+			Files.write(outputFile, bytes);
+		}
+
+		@Override
+		public void close() {}
 	}
 }
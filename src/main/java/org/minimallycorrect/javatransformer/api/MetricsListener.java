@@ -0,0 +1,23 @@
+package org.minimallycorrect.javatransformer.api;
+
+/**
+ * Receives metrics for each entry transformed by {@link JavaTransformer#load(java.nio.file.Path)} or
+ * {@link JavaTransformer#transform(java.nio.file.Path, java.nio.file.Path)}
+ * <p>
+ * Methods are called from one thread at a time, in the order entries were read, so implementations don't need to be
+ * thread safe even when {@link JavaTransformer#setParallelism(int)} is greater than 1.
+ *
+ * @see MetricsSummary
+ */
+public interface MetricsListener {
+	/**
+	 * Called once an entry has been transformed and written
+	 */
+	void onEntry(EntryMetrics metrics);
+
+	/**
+	 * Called once all entries of a jar or folder have been transformed, before any
+	 * {@link JavaTransformer#getAfterTransform()} handlers run
+	 */
+	default void onFinished() {}
+}
@@ -0,0 +1,101 @@
+package org.minimallycorrect.javatransformer.api;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import lombok.Getter;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@link MetricsListener} which totals the metrics of all entries, for example to log where time went:
+ *
+ * <pre>
+ * javaTransformer.setMetricsListener(new MetricsSummary(System.out::println));
+ * </pre>
+ */
+public class MetricsSummary implements MetricsListener {
+	@Nullable
+	private final Consumer<String> output;
+	private final long[] outcomeCounts = new long[EntryMetrics.Outcome.values().length];
+	private final long[] phaseNanos = new long[EntryMetrics.Phase.values().length];
+	private final Map<Transformer, Long> transformerNanos = new LinkedHashMap<>();
+	@Getter
+	private long entries;
+	@Getter
+	private long parsed;
+	@Getter
+	private long bytesIn;
+	@Getter
+	private long bytesOut;
+
+	public MetricsSummary() {
+		this(null);
+	}
+
+	/**
+	 * @param output receives the summary whenever a jar or folder has been transformed
+	 */
+	public MetricsSummary(@Nullable Consumer<String> output) {
+		this.output = output;
+	}
+
+	private static String millis(long nanos) {
+		return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000d);
+	}
+
+	@Override
+	public synchronized void onEntry(EntryMetrics metrics) {
+		entries++;
+		outcomeCounts[metrics.getOutcome().ordinal()]++;
+		if (metrics.isParsed())
+			parsed++;
+		bytesIn += metrics.getBytesIn();
+		bytesOut += metrics.getBytesOut();
+		for (EntryMetrics.Phase phase : EntryMetrics.Phase.values())
+			phaseNanos[phase.ordinal()] += metrics.getNanos(phase);
+		metrics.getTransformerNanos().forEach((transformer, nanos) -> transformerNanos.merge(transformer, nanos, Long::sum));
+	}
+
+	@Override
+	public void onFinished() {
+		if (output != null)
+			output.accept(toString());
+	}
+
+	public synchronized long getCount(EntryMetrics.Outcome outcome) {
+		return outcomeCounts[outcome.ordinal()];
+	}
+
+	public synchronized long getNanos(EntryMetrics.Phase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+
+	/**
+	 * @return total time spent in each transformer
+	 */
+	public synchronized Map<Transformer, Long> getTransformerNanos() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(transformerNanos));
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder summary = new StringBuilder();
+		summary.append(entries).append(" entries:");
+		for (EntryMetrics.Outcome outcome : EntryMetrics.Outcome.values())
+			summary.append(' ').append(outcome.name().toLowerCase(Locale.ROOT)).append(' ').append(getCount(outcome));
+		summary.append(", parsed ").append(parsed);
+		summary.append("\nbytes: in ").append(bytesIn).append(", out ").append(bytesOut);
+		summary.append("\ntime (ms):");
+		for (EntryMetrics.Phase phase : EntryMetrics.Phase.values())
+			summary.append(' ').append(phase.name().toLowerCase(Locale.ROOT)).append(' ').append(millis(getNanos(phase)));
+		if (!transformerNanos.isEmpty()) {
+			summary.append("\ntransformers (ms):");
+			transformerNanos.forEach((transformer, nanos) -> summary.append("\n\t").append(transformer).append(": ").append(millis(nanos)));
+		}
+		return summary.toString();
+	}
+}
@@ -0,0 +1,250 @@
+package org.minimallycorrect.javatransformer.api;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Persistent cache of transformed class and source files, set with {@link JavaTransformer#setCache(TransformCache)}
+ * <p>
+ * Results are keyed by a hash of the input file's name and bytes, and the class name and
+ * {@link Transformer#getVersion() version} of every transformer run on it, in order. Files are only cached when all of
+ * their transformers have a version. A transformer's version must change whenever its output for the same input could
+ * change, including when it depends on other classes in the {@link ClassPath}.
+ * <p>
+ * When the cache grows beyond its maximum size the least recently used entries are deleted. The cache directory can be
+ * shared by multiple transformers and processes.
+ */
+public class TransformCache {
+	/**
+	 * Changed when the output of this library for the same transformers may change
+	 */
+	private static final String FORMAT = "JavaTransformer-1";
+	private static final byte UNCHANGED_ENTRY = 0;
+	private static final byte TRANSFORMED_ENTRY = 1;
+	/**
+	 * Returned by {@link #get(String)} when the input was not changed by its transformers
+	 */
+	static final byte[] UNCHANGED = new byte[0];
+	@Getter
+	private final Path directory;
+	@Getter
+	private final long maxSize;
+	private final AtomicLong size = new AtomicLong();
+
+	/**
+	 * @param directory folder to store entries in, which is created if it doesn't exist
+	 * @param maxSize   maximum total size of entries in bytes
+	 */
+	public TransformCache(@NonNull Path directory, long maxSize) {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+		this.directory = directory;
+		this.maxSize = maxSize;
+		try {
+			Files.createDirectories(directory);
+			for (Path entry : listEntries())
+				size.addAndGet(Files.size(entry));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes) {
+		val hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return hex.toString();
+	}
+
+	/**
+	 * @return total size of the entries in bytes, as of when the last entry was added by this instance
+	 */
+	public long getSize() {
+		return size.get();
+	}
+
+	/**
+	 * Deletes all entries
+	 */
+	public synchronized void clear() {
+		try {
+			for (Path entry : listEntries())
+				delete(entry);
+			size.set(0);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param fingerprint transformers which will be run on the input, and their versions
+	 */
+	String getKey(String relativeName, byte[] input, String fingerprint) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new TransformationException(e);
+		}
+		digest.update(FORMAT.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(relativeName.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+		digest.update(input);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @return the transformed bytes, {@link #UNCHANGED} if the transformers didn't change the input, or null if there is
+	 * no entry
+	 */
+	@Nullable
+	byte[] get(String key) {
+		val file = getFile(key);
+		byte[] data;
+		try {
+			data = Files.readAllBytes(file);
+			// used as the access time for eviction, as file systems often don't record access times
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (data.length == 1 && data[0] == UNCHANGED_ENTRY)
+			return UNCHANGED;
+		if (data.length > 1 && data[0] == TRANSFORMED_ENTRY) {
+			val transformed = new byte[data.length - 1];
+			System.arraycopy(data, 1, transformed, 0, transformed.length);
+			return transformed;
+		}
+		// written by an incompatible version, or truncated
+		delete(file);
+		return null;
+	}
+
+	/**
+	 * @param transformed the transformed bytes, or null if the transformers didn't change the input
+	 */
+	void put(String key, @Nullable byte[] transformed) {
+		val data = new byte[transformed == null ? 1 : transformed.length + 1];
+		if (transformed == null) {
+			data[0] = UNCHANGED_ENTRY;
+		} else {
+			data[0] = TRANSFORMED_ENTRY;
+			System.arraycopy(transformed, 0, data, 1, transformed.length);
+		}
+
+		val file = getFile(key);
+		try {
+			Files.createDirectories(file.getParent());
+			// written to a temporary file first so readers never see a partial entry
+			val temporary = Files.createTempFile(file.getParent(), key, ".tmp");
+			try {
+				Files.write(temporary, data);
+				try {
+					Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		if (size.addAndGet(data.length) > maxSize)
+			evict();
+	}
+
+	private Path getFile(String key) {
+		return directory.resolve(key.substring(0, 2)).resolve(key.substring(2));
+	}
+
+	private List<Path> listEntries() throws IOException {
+		val entries = new ArrayList<Path>();
+		try (Stream<Path> files = Files.walk(directory, 2)) {
+			files.forEach(it -> {
+				if (it.getNameCount() - directory.getNameCount() == 2 && !it.getFileName().toString().endsWith(".tmp") && Files.isRegularFile(it))
+					entries.add(it);
+			});
+		}
+		return entries;
+	}
+
+	/**
+	 * Deletes the least recently used entries until the cache is at three quarters of its maximum size, so that
+	 * eviction doesn't run again for every new entry
+	 */
+	private synchronized void evict() {
+		if (size.get() <= maxSize)
+			return;
+		try {
+			val entries = new ArrayList<EvictionCandidate>();
+			long total = 0;
+			for (Path entry : listEntries()) {
+				try {
+					val candidate = new EvictionCandidate(entry, Files.size(entry), Files.getLastModifiedTime(entry).toMillis());
+					entries.add(candidate);
+					total += candidate.size;
+				} catch (NoSuchFileException ignored) {
+					// deleted by another process
+				}
+			}
+			entries.sort(Comparator.comparingLong(it -> it.lastUsed));
+			val target = maxSize / 4 * 3;
+			for (EvictionCandidate entry : entries) {
+				if (total <= target)
+					break;
+				delete(entry.path);
+				total -= entry.size;
+			}
+			size.set(total);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void delete(Path entry) {
+		try {
+			Files.deleteIfExists(entry);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static class EvictionCandidate {
+		final Path path;
+		final long size;
+		final long lastUsed;
+
+		EvictionCandidate(Path path, long size, long lastUsed) {
+			this.path = path;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package org.minimallycorrect.javatransformer.api;
 
 import java.util.Collection;
+import java.util.Collections;
+
+import org.jetbrains.annotations.Nullable;
 
 public interface Transformer {
 	/**
@@ -8,10 +11,61 @@ public interface Transformer {
 	 */
 	void transform(ClassInfo editor);
 
+	/**
+	 * When {@link JavaTransformer#setParallelism(int)} is greater than 1, {@link #transform(ClassInfo)} is called
+	 * concurrently for different classes only if this returns true. Otherwise calls to this transformer are serialized.
+	 *
+	 * @return true if this transformer can safely transform multiple classes at once
+	 */
+	default boolean isThreadSafe() {
+		return false;
+	}
+
+	/**
+	 * Identifies the behaviour of this transformer for {@link JavaTransformer#setCache(TransformCache)}. Must change
+	 * whenever the output for the same input could change.
+	 *
+	 * @return version of this transformer, or null if its results must not be cached
+	 */
+	@Nullable
+	default String getVersion() {
+		return null;
+	}
+
+	/**
+	 * Transformer which only runs on the classes it targets. Classes which no transformer targets are not parsed.
+	 */
 	interface TargetedTransformer extends Transformer {
 		/**
 		 * @return List of classes which this transformer will run on
 		 */
 		Collection<String> getTargetClasses();
+
+		/**
+		 * @return packages whose classes, including those in subpackages, this transformer will run on
+		 */
+		default Collection<String> getTargetPackages() {
+			return Collections.emptyList();
+		}
+
+		/**
+		 * Patterns matching fully qualified class names, where {@code *} matches within a package segment and {@code **}
+		 * matches across segments. {@code **.} matches zero or more packages, so {@code com.example.**.*Entity} matches
+		 * both {@code com.example.FooEntity} and {@code com.example.foo.BarEntity}.
+		 *
+		 * @return patterns matching classes which this transformer will run on
+		 */
+		default Collection<String> getTargetPatterns() {
+			return Collections.emptyList();
+		}
+
+		/**
+		 * Targeting annotations requires reading the header of every class, but not its method code
+		 *
+		 * @return fully qualified names of annotations, classes annotated with any of which this transformer will run on
+		 */
+		default Collection<String> getTargetAnnotations() {
+			return Collections.emptyList();
+		}
 	}
 }
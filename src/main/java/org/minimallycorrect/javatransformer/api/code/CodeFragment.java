@@ -42,6 +42,24 @@ public interface CodeFragment {
 		insert(codeFragment, position, new InsertionOptions());
 	}
 
+	/**
+	 * Inserts a code fragment at each of the given targets, eg fragments found with {@link #findFragments(Class)}
+	 * <p>
+	 * Same result as calling {@link #insert(CodeFragment, InsertionPosition, InsertionOptions)} on each target, except
+	 * that every target is analysed before any code is inserted, so the containing method is only analysed once rather
+	 * than once per insertion. Targets which overlap are inserted at one at a time.
+	 *
+	 * @param targets fragments in the same method as this fragment
+	 */
+	default void insertAt(@NonNull List<? extends CodeFragment> targets, @NonNull CodeFragment codeFragment, @NonNull InsertionPosition position, @NonNull InsertionOptions insertionOptions) {
+		for (CodeFragment target : targets)
+			target.insert(codeFragment, position, insertionOptions);
+	}
+
+	default void insertAt(@NonNull List<? extends CodeFragment> targets, @NonNull CodeFragment codeFragment, @NonNull InsertionPosition position) {
+		insertAt(targets, codeFragment, position, new InsertionOptions());
+	}
+
 	@SuppressWarnings("unchecked")
 	default <T extends CodeFragment> List<T> findFragments(Class<T> fragmentType) {
 		if (fragmentType.isAssignableFrom(this.getClass()))
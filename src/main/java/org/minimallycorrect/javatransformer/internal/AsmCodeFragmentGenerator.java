@@ -9,6 +9,7 @@ import java.util.Arrays;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Objects;
@@ -33,12 +34,15 @@ import org.objectweb.asm.tree.analysis.Frame;
 
 import org.minimallycorrect.javatransformer.api.AccessFlags;
 import org.minimallycorrect.javatransformer.api.Parameter;
+import org.minimallycorrect.javatransformer.api.TransformationException;
 import org.minimallycorrect.javatransformer.api.Type;
 import org.minimallycorrect.javatransformer.api.code.CodeFragment;
 import org.minimallycorrect.javatransformer.api.code.IntermediateValue;
 import org.minimallycorrect.javatransformer.internal.asm.AsmInstructions;
 import org.minimallycorrect.javatransformer.internal.asm.CombinedValue;
 import org.minimallycorrect.javatransformer.internal.asm.DebugPrinter;
+import org.minimallycorrect.javatransformer.internal.asm.InstructionFrames;
+import org.minimallycorrect.javatransformer.internal.util.CachingSupplier;
 import org.minimallycorrect.javatransformer.internal.util.Cloner;
 import org.minimallycorrect.javatransformer.internal.util.CollectionUtil;
 import org.minimallycorrect.javatransformer.internal.util.JVMUtil;
@@ -76,16 +80,15 @@ class AsmCodeFragmentGenerator implements Opcodes {
 
 			val last = getLastInstruction();
 
-			val frames = containingMethodNodeInfo.getStackFrames();
+			val frames = containingMethodNodeInfo.getInstructionFrames(current, last);
 			boolean canThrow = false;
 			boolean canReturn = false;
 			boolean canFallThrough;
 
-			val list = containingMethodNodeInfo.node.instructions;
 			while (true) {
 				boolean canFallThroughThisInstruction = false;
 				// must be reachable
-				if (frames[list.indexOf(current)] != null)
+				if (frames.get(current) != null)
 					switch (current.getOpcode()) {
 						// return instructions
 						case Opcodes.ARETURN:
@@ -135,10 +138,8 @@ class AsmCodeFragmentGenerator implements Opcodes {
 			val first = getFirstInstruction();
 			val last = getLastInstruction();
 			val node = containingMethodNodeInfo.node;
-			val insnList = node.instructions;
-			val frames = containingMethodNodeInfo.getStackFrames();
-			val startIndex = insnList.indexOf(first);
-			val endIndex = insnList.indexOf(last) + 1;
+			val frames = containingMethodNodeInfo.getInstructionFrames(first, last);
+			val end = last.getNext();
 
 			// TODO: local outputs?
 			val results = new ArrayList<IntermediateValue>();
@@ -150,7 +151,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 					if ((opcode >= ILOAD && opcode < IALOAD) || insn instanceof VarInsnNode) {
 						val varInsnNode = (VarInsnNode) insn;
 						val target = varInsnNode.var;
-						val frame = frames[insnList.indexOf(insn)];
+						val frame = frames.get(insn);
 						val local = frame.getLocal(target);
 						if (local.isPrefilled() || !local.isInitialised())
 							usedLocals.set(target);
@@ -164,13 +165,17 @@ class AsmCodeFragmentGenerator implements Opcodes {
 				for (int i = 0; i < usedLocals.size(); i++)
 					if (usedLocals.get(i)) {
 						org.objectweb.asm.Type type = null;
-						for (int j = startIndex; j <= endIndex; j++) {
-							val frame = frames[j];
+						AbstractInsnNode current = first;
+						while (true) {
+							val frame = current == end ? frames.getAfter(last) : frames.get(current);
 							val local = frame.getLocal(i);
 							if (local.isInitialised()) {
 								type = local.getType();
 								break;
 							}
+							if (current == end)
+								break;
+							current = current.getNext();
 						}
 						if (type == null)
 							type = CombinedValue.OBJECT_TYPE;
@@ -182,8 +187,8 @@ class AsmCodeFragmentGenerator implements Opcodes {
 			}
 
 			if (stack) {
-				Frame<CombinedValue> firstFrame = frames[startIndex];
-				Frame<CombinedValue> lastFrame = endIndex >= frames.length ? null : frames[endIndex];
+				Frame<CombinedValue> firstFrame = frames.get(first);
+				Frame<CombinedValue> lastFrame = frames.getAfter(last);
 				if (!inputs) {
 					Frame<CombinedValue> temp = firstFrame;
 					firstFrame = lastFrame;
@@ -194,7 +199,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 
 				if (firstFrame == null && lastFrame == null) {
 					DebugPrinter.printByteCode(containingMethodNodeInfo.node, "unexpected_null_frame");
-					throw new IllegalStateException("frames were unreachable " + Arrays.toString(frames));
+					throw new IllegalStateException("frames were unreachable " + Arrays.toString(frames.toArray()));
 				}
 
 				// Stack types
@@ -220,6 +225,48 @@ class AsmCodeFragmentGenerator implements Opcodes {
 
 		@Override
 		public void insert(@NonNull CodeFragment fragmentOfAnyType, @NonNull InsertionPosition position, @NonNull InsertionOptions insertionOptions) {
+			insert(fragmentOfAnyType, position, insertionOptions, new InsertionTarget(this));
+		}
+
+		@Override
+		public void insertAt(@NonNull List<? extends CodeFragment> targets, @NonNull CodeFragment codeFragment, @NonNull InsertionPosition position, @NonNull InsertionOptions insertionOptions) {
+			val insertionTargets = new ArrayList<InsertionTarget>(targets.size());
+			val targetInstructions = Collections.newSetFromMap(new IdentityHashMap<AbstractInsnNode, Boolean>());
+			boolean overlapping = false;
+			for (CodeFragment target : targets) {
+				if (!(target instanceof AsmCodeFragment))
+					throw new TypeMismatchException(AsmCodeFragment.class, target);
+				val asmTarget = (AsmCodeFragment) target;
+				if (asmTarget.containingMethodNodeInfo.node != containingMethodNodeInfo.node)
+					throw new TransformationException("Can't insert at " + target + " as it is not in the same method as " + this);
+				insertionTargets.add(new InsertionTarget(asmTarget));
+				AbstractInsnNode insn = asmTarget.getFirstInstruction();
+				while (true) {
+					overlapping |= !targetInstructions.add(insn);
+					if (insn == asmTarget.getLastInstruction())
+						break;
+					insn = insn.getNext();
+				}
+			}
+
+			// overlapping targets would be changed by earlier insertions, so need their frames recalculated after each one
+			if (overlapping) {
+				for (CodeFragment target : targets)
+					target.insert(codeFragment, position, insertionOptions);
+				return;
+			}
+
+			// every target is analysed from the same frames, before any code is inserted. Several targets share one full
+			// analysis, rather than each running its own partial analysis
+			if (insertionTargets.size() > 1)
+				containingMethodNodeInfo.getInstructionFrames();
+			for (val insertionTarget : insertionTargets)
+				insertionTarget.computeFor(position);
+			for (val insertionTarget : insertionTargets)
+				insertionTarget.fragment.insert(codeFragment, position, insertionOptions, insertionTarget);
+		}
+
+		private void insert(CodeFragment fragmentOfAnyType, InsertionPosition position, InsertionOptions insertionOptions, InsertionTarget target) {
 			if (this.equals(fragmentOfAnyType)) {
 				if (position == InsertionPosition.OVERWRITE)
 					return;
@@ -237,7 +284,7 @@ class AsmCodeFragmentGenerator implements Opcodes {
 			val first = getFirstInstruction();
 			val last = getLastInstruction();
 
-			val executionResult = getExecutionOutcome();
+			val executionResult = target.executionOutcome.get();
 			if (!executionResult.canFallThrough && position == InsertionPosition.AFTER)
 				throw new UnreachableInsertionException(this, InsertionPosition.AFTER);
 
@@ -253,13 +300,11 @@ class AsmCodeFragmentGenerator implements Opcodes {
 				DebugPrinter.printByteCode(clonedMethod, "base");
 				applyInsertionOptions((MethodNodeInfoCodeFragment) fragment, insertionOptions);
 				DebugPrinter.printByteCode(clonedMethod, "insertionOptions");
-				convertTypes((MethodNodeInfoCodeFragment) fragment, position);
+				convertTypes((MethodNodeInfoCodeFragment) fragment, position, target);
 				DebugPrinter.printByteCode(clonedMethod, "convertedTypes");
 			}
 
-			val startIndex = containingList.indexOf(first);
-			val endIndex = containingList.indexOf(last);
-			if (startIndex == -1 || endIndex == -1)
+			if (!isInList(containingList, first) || !isInList(containingList, last))
 				throw new ArrayIndexOutOfBoundsException();
 
 			switch (position) {
@@ -284,24 +329,24 @@ class AsmCodeFragmentGenerator implements Opcodes {
 					containingList.insert(last, insertInstructions);
 					break;
 				default:
-					throw new UnsupportedOperationException("TODO: not yet implemented for " + getClass() + ' ' + fragment.getClass() + ' ' + position + " from " + startIndex + " to " + endIndex);
+					throw new UnsupportedOperationException("TODO: not yet implemented for " + getClass() + ' ' + fragment.getClass() + ' ' + position);
 			}
 			containingMethodNodeInfo.markCodeDirty();
 		}
 
-		private void convertTypes(MethodNodeInfoCodeFragment insertFragment, InsertionPosition position) {
+		private void convertTypes(MethodNodeInfoCodeFragment insertFragment, InsertionPosition position, InsertionTarget target) {
 			List<IntermediateValue> existingInputTypes;
 			List<IntermediateValue> existingOutputTypes;
 			switch (position) {
 				case BEFORE:
-					existingOutputTypes = existingInputTypes = getInputTypes();
+					existingOutputTypes = existingInputTypes = target.inputTypes.get();
 					break;
 				case OVERWRITE:
-					existingInputTypes = getInputTypes();
-					existingOutputTypes = getOutputTypes();
+					existingInputTypes = target.inputTypes.get();
+					existingOutputTypes = target.outputTypes.get();
 					break;
 				case AFTER:
-					existingOutputTypes = existingInputTypes = getOutputTypes();
+					existingOutputTypes = existingInputTypes = target.outputTypes.get();
 					break;
 				default:
 					return;
@@ -390,15 +435,15 @@ class AsmCodeFragmentGenerator implements Opcodes {
 			if (options.convertReturnToOutputTypes) {
 				LabelNode endLabel = null;
 				val last = insns.getLast();
-				Frame<CombinedValue>[] frames = null;
+				InstructionFrames frames = null;
 				// TODO: don't use toArray to iterate
 				for (val current : insns.toArray()) {
 					val opcode = current.getOpcode();
 					if (opcode >= IRETURN && opcode <= RETURN) {
 						// no need to jump if at the last instruction
 						if (frames == null)
-							frames = containingMethodNodeInfo.getStackFrames();
-						val frame = frames[insns.indexOf(current)];
+							frames = containingMethodNodeInfo.getInstructionFrames();
+						val frame = frames.get(current);
 						if (frame.getStackSize() != (opcode == RETURN ? 0 : 1))
 							throw new UnsupportedOperationException("TODO: handle non-blank stack at return instruction - allowed but not often done" + frame);
 
@@ -449,12 +494,15 @@ class AsmCodeFragmentGenerator implements Opcodes {
 				}
 			}
 			if (options.eliminateDeadCode) {
-				val frames = containingMethodNodeInfo.getStackFrames();
-				for (int i = insns.size() - 1; i >= 0; i--) {
-					if (frames[i] == null) {
-						insns.remove(insns.get(i));
+				val frames = containingMethodNodeInfo.getInstructionFrames();
+				AbstractInsnNode current = insns.getFirst();
+				while (current != null) {
+					val next = current.getNext();
+					if (frames.get(current) == null) {
+						insns.remove(current);
 						containingMethodNodeInfo.markCodeDirty();
 					}
+					current = next;
 				}
 			}
 		}
@@ -503,6 +551,45 @@ class AsmCodeFragmentGenerator implements Opcodes {
 		}
 	}
 
+	/**
+	 * Checks by identity, as {@link InsnList#indexOf(AbstractInsnNode)} rebuilds its index after every edit
+	 *
+	 * @return true if the instruction hasn't been removed from the list
+	 */
+	private static boolean isInList(InsnList list, AbstractInsnNode insn) {
+		val previous = insn.getPrevious();
+		return previous == null ? list.getFirst() == insn : previous.getNext() == insn;
+	}
+
+	/**
+	 * Execution outcome and types of a fragment being inserted at, each computed at most once from the containing
+	 * method's frames
+	 */
+	private static class InsertionTarget {
+		final AsmCodeFragment fragment;
+		final CachingSupplier<CodeFragment.ExecutionOutcome> executionOutcome;
+		final CachingSupplier<List<IntermediateValue>> inputTypes;
+		final CachingSupplier<List<IntermediateValue>> outputTypes;
+
+		InsertionTarget(AsmCodeFragment fragment) {
+			this.fragment = fragment;
+			executionOutcome = CachingSupplier.of(fragment::getExecutionOutcome);
+			inputTypes = CachingSupplier.of(fragment::getInputTypes);
+			outputTypes = CachingSupplier.of(fragment::getOutputTypes);
+		}
+
+		/**
+		 * Computes everything an insertion at the given position may use, before other insertions change the method
+		 */
+		void computeFor(CodeFragment.InsertionPosition position) {
+			executionOutcome.get();
+			if (position != CodeFragment.InsertionPosition.AFTER)
+				inputTypes.get();
+			if (position != CodeFragment.InsertionPosition.BEFORE)
+				outputTypes.get();
+		}
+	}
+
 	abstract static class InstructionCodeFragment extends AsmCodeFragment {
 		InstructionCodeFragment(ByteCodeInfo.MethodNodeInfo containingMethodNodeInfo) {
 			super(containingMethodNodeInfo);
@@ -1,18 +1,32 @@
 package org.minimallycorrect.javatransformer.internal;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.NonNull;
+import lombok.Setter;
 import lombok.SneakyThrows;
+import lombok.ToString;
 import lombok.val;
 
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.ClassNode;
 import org.objectweb.asm.tree.FieldNode;
 import org.objectweb.asm.tree.MethodNode;
@@ -21,6 +35,8 @@ import org.objectweb.asm.tree.analysis.Frame;
 import org.minimallycorrect.javatransformer.api.AccessFlags;
 import org.minimallycorrect.javatransformer.api.Annotation;
 import org.minimallycorrect.javatransformer.api.ClassInfo;
+import org.minimallycorrect.javatransformer.api.ClassPath;
+import org.minimallycorrect.javatransformer.api.EntryMetrics;
 import org.minimallycorrect.javatransformer.api.FieldInfo;
 import org.minimallycorrect.javatransformer.api.MethodInfo;
 import org.minimallycorrect.javatransformer.api.Parameter;
@@ -32,22 +48,58 @@ import org.minimallycorrect.javatransformer.internal.asm.CombinedAnalyzer;
 import org.minimallycorrect.javatransformer.internal.asm.CombinedInterpreter;
 import org.minimallycorrect.javatransformer.internal.asm.CombinedValue;
 import org.minimallycorrect.javatransformer.internal.asm.FilteringClassWriter;
+import org.minimallycorrect.javatransformer.internal.asm.InstructionFrames;
+import org.minimallycorrect.javatransformer.internal.asm.TieredClassNode;
 import org.minimallycorrect.javatransformer.internal.util.AnnotationParser;
 import org.minimallycorrect.javatransformer.internal.util.CachingSupplier;
 import org.minimallycorrect.javatransformer.internal.util.Cloner;
 import org.minimallycorrect.javatransformer.internal.util.CollectionUtil;
+import org.minimallycorrect.javatransformer.internal.util.MetricsRecorder;
 
 @Data
+@EqualsAndHashCode(exclude = {"codeAccessed", "controlFlowChanged", "classPath", "nodeAccessed"}, doNotUseGetters = true)
+@ToString(exclude = {"codeAccessed", "controlFlowChanged", "classPath", "nodeAccessed"}, doNotUseGetters = true)
 @SuppressWarnings("unchecked")
 public class ByteCodeInfo implements ClassInfo {
 	private final Supplier<ClassNode> node;
 	@Getter(lazy = true)
 	private final List<Annotation> annotations = getAnnotationsInternal();
 	public boolean hasChangedMethodControlFlow;
+	/**
+	 * Methods whose code may have been changed, which are written from their nodes instead of copied from the original class
+	 */
+	@Getter(AccessLevel.NONE)
+	private final Set<MethodNode> codeAccessed = Collections.newSetFromMap(new IdentityHashMap<>());
+	/**
+	 * Methods whose frames must be recomputed when written
+	 */
+	@Getter(AccessLevel.NONE)
+	private final Set<MethodNode> controlFlowChanged = Collections.newSetFromMap(new IdentityHashMap<>());
 	@NonNull
 	private String className;
 	@NonNull
 	private Map<String, String> filters;
+	/**
+	 * Class path used to find common superclasses when computing frames, only the JDK's classes if null
+	 */
+	@Nullable
+	private ClassPath classPath;
+	/**
+	 * Whether the node was handed out by {@link #getNode()}, so {@link #hasChangedMethodControlFlow} may refer to any method
+	 */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private boolean nodeAccessed;
+
+	/**
+	 * Gives direct access to the class node, with method code read. Every method is then written from its node, as its
+	 * code may be edited directly. If its control flow is edited, {@link #hasChangedMethodControlFlow} must be set.
+	 */
+	public Supplier<ClassNode> getNode() {
+		readCode();
+		nodeAccessed = true;
+		return node;
+	}
 
 	@Override
 	public String getName() {
@@ -74,6 +126,8 @@ public class ByteCodeInfo implements ClassInfo {
 		MethodNode node;
 		if (method instanceof MethodNodeInfo) {
 			val orig = ((MethodNodeInfo) method);
+			// the clone shares the original's instructions
+			orig.accessCode();
 			node = Cloner.clone(orig.node);
 			FilteringClassWriter.addFilter(filters, orig.getClassInfo().getName(), getName());
 		} else {
@@ -153,6 +207,113 @@ public class ByteCodeInfo implements ClassInfo {
 		return this;
 	}
 
+	/**
+	 * Reads the code of the methods in this class, if the class was read without it. Methods are then written from their
+	 * nodes, as their code may be edited directly.
+	 */
+	public void readCode() {
+		readCodeInternal();
+		codeAccessed.addAll(node.get().methods);
+	}
+
+	private void readCodeInternal() {
+		if (node instanceof TieredClassNode)
+			((TieredClassNode) node).getWithCode();
+	}
+
+	/**
+	 * Writes this class
+	 * <p>
+	 * Methods whose code wasn't accessed and whose descriptor, signature and exceptions are unchanged are copied from the
+	 * original class file as is. Frames are only computed for methods whose control flow changed.
+	 */
+	public byte[] toByteArray() {
+		val node = this.node.get();
+		val hierarchy = (classPath == null ? new ClassPath() : classPath).getClassHierarchy().withClass(node);
+		if (!(this.node instanceof TieredClassNode)) {
+			val writer = new FilteringClassWriter(ClassWriter.COMPUTE_MAXS | (hasChangedMethodControlFlow ? ClassWriter.COMPUTE_FRAMES : 0), hierarchy);
+			writer.filters.putAll(filters);
+			node.accept(writer);
+			return writer.toByteArray();
+		}
+
+		val tiered = (TieredClassNode) this.node;
+		val copied = Collections.newSetFromMap(new IdentityHashMap<MethodNode, Boolean>());
+		val computeFrames = Collections.newSetFromMap(new IdentityHashMap<MethodNode, Boolean>());
+		boolean needsCode = false;
+		// control flow changed through getNode() isn't tracked per method
+		val directControlFlowChange = nodeAccessed && hasChangedMethodControlFlow;
+		for (MethodNode method : node.methods) {
+			if (controlFlowChanged.contains(method) || (directControlFlowChange && codeAccessed.contains(method)))
+				computeFrames.add(method);
+			// filters rename constants in every method, so they rule out copying
+			else if (filters.isEmpty() && !codeAccessed.contains(method) && tiered.canCopy(method))
+				copied.add(method);
+			else if (tiered.isReadMethod(method))
+				needsCode = true;
+		}
+		if (needsCode)
+			// code which is written out unchanged doesn't need its frames expanded
+			tiered.getWithCode(false);
+		val framesComputed = computeFrames(node, computeFrames, hierarchy);
+
+		val writer = new FilteringClassWriter(tiered.getReader(), ClassWriter.COMPUTE_MAXS, hierarchy);
+		writer.filters.putAll(filters);
+		val copies = new IdentityHashMap<MethodNode, MethodVisitor>();
+		node.accept(new ClassVisitor(Opcodes.ASM5, writer) {
+			private int index;
+
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+				MethodNode method = node.methods.get(index++);
+				if (copied.contains(method)) {
+					copies.put(method, tiered.startCopy(writer, method));
+					return null;
+				}
+				val withFrames = framesComputed.get(method);
+				if (withFrames != null) {
+					withFrames.accept(cv);
+					return null;
+				}
+				return super.visitMethod(access, name, desc, signature, exceptions);
+			}
+
+			@Override
+			public void visitEnd() {
+				tiered.copyMethods(copies);
+				super.visitEnd();
+			}
+		});
+		return writer.toByteArray();
+	}
+
+	/**
+	 * Frames are computed in a class containing only the given methods. Filters aren't applied, as the returned methods
+	 * are written through the filtering target writer.
+	 *
+	 * @return the given methods with computed frames
+	 */
+	private Map<MethodNode, MethodNode> computeFrames(ClassNode node, Set<MethodNode> methods, ClassHierarchy hierarchy) {
+		val computed = new IdentityHashMap<MethodNode, MethodNode>();
+		if (methods.isEmpty())
+			return computed;
+		val writer = new FilteringClassWriter(ClassWriter.COMPUTE_FRAMES, hierarchy);
+		writer.visit(node.version, node.access, node.name, node.signature, node.superName, node.interfaces.toArray(new String[0]));
+		val order = new ArrayList<MethodNode>();
+		for (MethodNode method : node.methods)
+			if (methods.contains(method)) {
+				method.accept(writer);
+				order.add(method);
+			}
+		writer.visitEnd();
+
+		val withFrames = new ClassNode();
+		new ClassReader(writer.toByteArray()).accept(withFrames, 0);
+		for (int i = 0; i < order.size(); i++)
+			computed.put(order.get(i), withFrames.methods.get(i));
+		return computed;
+	}
+
 	MethodNodeInfo wrap(MethodNode node) {
 		return new MethodNodeInfo(node);
 	}
@@ -221,8 +382,20 @@ public class ByteCodeInfo implements ClassInfo {
 	}
 
 	public class MethodNodeInfo implements MethodInfo {
+		/**
+		 * Method code may not have been read yet, {@link #accessCode()} must be called before reading or editing it
+		 * directly. Control flow changed directly must be marked with {@link #markCodeDirty()}.
+		 */
 		public final MethodNode node;
-		private final CachingSupplier<Frame<CombinedValue>[]> stackFrames;
+		private final CachingSupplier<InstructionFrames> stackFrames;
+		/**
+		 * Frames for only the instructions queried through {@link #getInstructionFrames(AbstractInsnNode, AbstractInsnNode)},
+		 * and the instructions which can reach them
+		 */
+		@Nullable
+		private InstructionFrames partialStackFrames;
+		@Nullable
+		private boolean[] partiallyAnalysed;
 		private CachingSupplier<MethodDescriptor> descriptor;
 		private CachingSupplier<CodeFragment.Body> codeFragment;
 
@@ -238,7 +411,10 @@ public class ByteCodeInfo implements ClassInfo {
 						"\n\tsignature:" + node.signature, e);
 				}
 			});
-			codeFragment = CachingSupplier.of(() -> new AsmCodeFragmentGenerator.MethodNodeInfoCodeFragment(this));
+			codeFragment = CachingSupplier.of(() -> {
+				accessCode();
+				return new AsmCodeFragmentGenerator.MethodNodeInfoCodeFragment(this);
+			});
 			stackFrames = CachingSupplier.of(this::analyzeStackFrames);
 		}
 
@@ -317,6 +493,8 @@ public class ByteCodeInfo implements ClassInfo {
 		@Override
 		@SuppressWarnings("MethodDoesntCallSuperMethod")
 		public MethodInfo clone() {
+			// the clone shares this method's instructions
+			accessCode();
 			return new MethodNodeInfo(Cloner.clone(node));
 		}
 
@@ -326,17 +504,86 @@ public class ByteCodeInfo implements ClassInfo {
 		}
 
 		public Frame<CombinedValue>[] getStackFrames() {
+			return stackFrames.get().toArray();
+		}
+
+		/**
+		 * @return this method's frames, looked up by instruction
+		 */
+		public InstructionFrames getInstructionFrames() {
 			return stackFrames.get();
 		}
 
+		/**
+		 * Gets frames for at least the instructions from first to last and the frame after last. Unless the whole method
+		 * has already been analysed, only the instructions which can reach them are analysed. Falls back to analysing the
+		 * whole method once the queried instructions can be reached from most of it.
+		 */
+		@SneakyThrows
+		public InstructionFrames getInstructionFrames(AbstractInsnNode first, AbstractInsnNode last) {
+			if (stackFrames.isCached())
+				return stackFrames.get();
+			val partial = partialStackFrames;
+			if (partial != null && partial.isAnalysed(first, last))
+				return partial;
+
+			readCodeInternal();
+			val insns = node.instructions;
+			val analysed = CombinedAnalyzer.findInstructionsReaching(node, insns.indexOf(first), insns.indexOf(last));
+			val previouslyAnalysed = partiallyAnalysed;
+			int count = 0;
+			for (int i = 0; i < analysed.length; i++) {
+				// reanalyse earlier queries too, so repeated queries converge on a full analysis
+				if (previouslyAnalysed != null && previouslyAnalysed[i])
+					analysed[i] = true;
+				if (analysed[i])
+					count++;
+			}
+			if (count * 2 > analysed.length) {
+				partialStackFrames = null;
+				partiallyAnalysed = null;
+				return stackFrames.get();
+			}
+
+			val frames = new InstructionFrames(insns, analyze(analysed), analysed);
+			partialStackFrames = frames;
+			partiallyAnalysed = analysed;
+			return frames;
+		}
+
 		@SneakyThrows
-		private Frame<CombinedValue>[] analyzeStackFrames() {
-			return CombinedAnalyzer.analyze(new CombinedInterpreter(), getClassInfo().getNode().get().name, node);
+		private InstructionFrames analyzeStackFrames() {
+			readCodeInternal();
+			return new InstructionFrames(node.instructions, analyze(null));
+		}
+
+		@SneakyThrows
+		private Frame<CombinedValue>[] analyze(@Nullable boolean[] analysed) {
+			val metrics = MetricsRecorder.current();
+			val previous = metrics == null ? null : metrics.enter(EntryMetrics.Phase.ANALYSIS);
+			try {
+				return CombinedAnalyzer.analyze(new CombinedInterpreter(), ByteCodeInfo.this.node.get().name, node, analysed);
+			} finally {
+				if (metrics != null)
+					metrics.exit(previous);
+			}
 		}
 
 		public void markCodeDirty() {
 			stackFrames.set(null);
+			partialStackFrames = null;
+			partiallyAnalysed = null;
 			hasChangedMethodControlFlow = true;
+			codeAccessed.add(node);
+			controlFlowChanged.add(node);
+		}
+
+		/**
+		 * Reads this method's code, which may then be changed, so it won't be copied from the original class
+		 */
+		public void accessCode() {
+			readCodeInternal();
+			codeAccessed.add(node);
 		}
 	}
 }
@@ -0,0 +1,165 @@
+package org.minimallycorrect.javatransformer.internal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.Getter;
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+
+import org.minimallycorrect.javatransformer.api.ClassPath;
+import org.minimallycorrect.javatransformer.api.TransformationException;
+
+/**
+ * Superclass and interface edges of the classes in a {@link ClassPath}, read from class file headers without loading
+ * the classes
+ * <p>
+ * Used to find common superclasses when computing frames. Entries and results are cached, and safe to use from multiple
+ * threads.
+ */
+public class ClassHierarchy {
+	private static final String OBJECT = "java/lang/Object";
+	private final ClassFileSource classFiles;
+	private final Map<String, Optional<Entry>> entries = new ConcurrentHashMap<>();
+	private final Map<String, String> commonSuperClasses = new ConcurrentHashMap<>();
+
+	public ClassHierarchy(ClassFileSource classFiles) {
+		this.classFiles = classFiles;
+	}
+
+	/**
+	 * @param internalName class name in internal format, eg java/lang/String
+	 * @return the class's superclass and interfaces, or null if it has no class file in the class path
+	 */
+	@Nullable
+	public Entry get(String internalName) {
+		val cached = entries.get(internalName);
+		if (cached != null)
+			return cached.orElse(null);
+
+		byte[] classFile;
+		try {
+			classFile = classFiles.read(internalName);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		Entry entry = null;
+		if (classFile != null) {
+			// only the header is parsed, the rest of the class file is never visited
+			val reader = new ClassReader(classFile);
+			entry = new Entry(internalName, reader.getSuperName(), Arrays.asList(reader.getInterfaces()), (reader.getAccess() & Opcodes.ACC_INTERFACE) != 0);
+		}
+		entries.putIfAbsent(internalName, Optional.ofNullable(entry));
+		return entry;
+	}
+
+	private Entry getRequired(String internalName) {
+		val entry = get(internalName);
+		if (entry == null)
+			throw new TransformationException("Couldn't find class file for " + internalName + " in the class path to compute frames");
+		return entry;
+	}
+
+	/**
+	 * Same result as {@link org.objectweb.asm.ClassWriter#getCommonSuperClass(String, String)}, without loading classes
+	 */
+	public String getCommonSuperClass(String a, String b) {
+		if (a.equals(b))
+			return a;
+		val key = a.compareTo(b) < 0 ? a + ' ' + b : b + ' ' + a;
+		val cached = commonSuperClasses.get(key);
+		if (cached != null)
+			return cached;
+		val result = computeCommonSuperClass(a, b);
+		commonSuperClasses.putIfAbsent(key, result);
+		return result;
+	}
+
+	String computeCommonSuperClass(String a, String b) {
+		if (isAssignableFrom(a, b))
+			return a;
+		if (isAssignableFrom(b, a))
+			return b;
+		if (getRequired(a).isInterface() || getRequired(b).isInterface())
+			return OBJECT;
+		String current = a;
+		do {
+			val superName = getRequired(current).getSuperName();
+			if (superName == null)
+				return OBJECT;
+			current = superName;
+		} while (!isAssignableFrom(current, b));
+		return current;
+	}
+
+	/**
+	 * @return whether a value of type from can be assigned to type to
+	 */
+	private boolean isAssignableFrom(String to, String from) {
+		if (to.equals(from) || to.equals(OBJECT))
+			return true;
+		val entry = getRequired(from);
+		val superName = entry.getSuperName();
+		if (superName != null && isAssignableFrom(to, superName))
+			return true;
+		for (String anInterface : entry.getInterfaces())
+			if (isAssignableFrom(to, anInterface))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return a hierarchy which sees the given class as it is now instead of as it is in the class path, for writing a
+	 * class whose superclass or interfaces may have been changed
+	 */
+	public ClassHierarchy withClass(ClassNode node) {
+		val entry = new Entry(node.name, node.superName, node.interfaces == null ? Collections.emptyList() : node.interfaces, (node.access & Opcodes.ACC_INTERFACE) != 0);
+		return new ClassHierarchy(classFiles) {
+			@Nullable
+			@Override
+			public Entry get(String internalName) {
+				return internalName.equals(entry.getName()) ? entry : ClassHierarchy.this.get(internalName);
+			}
+
+			@Override
+			public String getCommonSuperClass(String a, String b) {
+				return a.equals(b) ? a : computeCommonSuperClass(a, b);
+			}
+		};
+	}
+
+	@FunctionalInterface
+	public interface ClassFileSource {
+		/**
+		 * @return the class file for the given internal class name, or null if there isn't one
+		 */
+		@Nullable
+		byte[] read(String internalName) throws IOException;
+	}
+
+	@Getter
+	public static class Entry {
+		private final String name;
+		@Nullable
+		private final String superName;
+		private final List<String> interfaces;
+		private final boolean isInterface;
+
+		Entry(String name, @Nullable String superName, List<String> interfaces, boolean isInterface) {
+			this.name = name;
+			this.superName = superName;
+			this.interfaces = interfaces;
+			this.isInterface = isInterface;
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package org.minimallycorrect.javatransformer.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+import org.minimallycorrect.javatransformer.internal.util.ParallelFileWalker;
+
+/**
+ * Persistent index of the class names found in one class path input, stored as a file in an index directory
+ * <p>
+ * Jars are indexed as a whole, folders per source file. A record is reused if its file's size and modification time
+ * are unchanged, or if they changed but the file's content hash didn't. Only records which don't match are rescanned.
+ */
+public class ClassPathIndex {
+	private static final int MAGIC = 0x4A54_4350;
+	private static final int VERSION = 1;
+	private static final String JAR_RECORD = "";
+	private final Path input;
+	private final Path indexFile;
+	private final Map<String, Record> records;
+	private boolean changed;
+
+	private ClassPathIndex(Path input, Path indexFile, Map<String, Record> records) {
+		this.input = input;
+		this.indexFile = indexFile;
+		this.records = records;
+	}
+
+	/**
+	 * Loads the index for the given input, or an empty index if there is no usable index file
+	 *
+	 * @param indexDirectory directory containing index files
+	 * @param input          normalized absolute class path input
+	 */
+	public static ClassPathIndex load(Path indexDirectory, Path input) {
+		val indexFile = indexDirectory.resolve(hex(digest(input.toString().getBytes(StandardCharsets.UTF_8))) + ".idx");
+		return new ClassPathIndex(input, indexFile, read(indexFile, input));
+	}
+
+	private static Map<String, Record> read(Path indexFile, Path input) {
+		val records = new HashMap<String, Record>();
+		if (!Files.isRegularFile(indexFile))
+			return records;
+
+		try (DataInputStream is = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+			if (is.readInt() != MAGIC || is.readInt() != VERSION || !is.readUTF().equals(input.toString()))
+				return records;
+			val count = is.readInt();
+			for (int i = 0; i < count; i++) {
+				val name = is.readUTF();
+				val size = is.readLong();
+				val lastModified = is.readLong();
+				val hash = new byte[is.readUnsignedByte()];
+				is.readFully(hash);
+				val classCount = is.readInt();
+				val classNames = new ArrayList<String>(classCount);
+				for (int j = 0; j < classCount; j++)
+					classNames.add(is.readUTF());
+				records.put(name, new Record(size, lastModified, hash, classNames));
+			}
+		} catch (IOException e) {
+			// a corrupt or partially written index is treated as missing and rebuilt
+			records.clear();
+		}
+		return records;
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static byte[] digest(byte[] bytes) {
+		return newDigest().digest(bytes);
+	}
+
+	private static byte[] hash(Path file) throws IOException {
+		val digest = newDigest();
+		val buffer = new byte[64 * 1024];
+		try (InputStream is = Files.newInputStream(file)) {
+			int read;
+			while ((read = is.read(buffer)) != -1)
+				digest.update(buffer, 0, read);
+		}
+		return digest.digest();
+	}
+
+	private static String hex(byte[] bytes) {
+		val builder = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes)
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		return builder.toString();
+	}
+
+	/**
+	 * Brings the index up to date with the input, rescanning only changed files
+	 *
+	 * @param jarScanner    finds the class names in a jar
+	 * @param sourceScanner finds the class names in a .java file in a folder. Called concurrently.
+	 */
+	public void refresh(Scanner jarScanner, Scanner sourceScanner) throws IOException {
+		if (Files.isDirectory(input)) {
+			List<Map.Entry<String, Record>> refreshed = ParallelFileWalker.walk(input, (file, attributes) -> {
+				String entryName = input.relativize(file).toString().replace(File.separatorChar, '/');
+				if (!entryName.endsWith(".java"))
+					return null;
+				return new AbstractMap.SimpleImmutableEntry<>(entryName, refresh(records.get(entryName), file, attributes, sourceScanner));
+			});
+			val found = new HashMap<String, Record>();
+			for (val entry : refreshed) {
+				found.put(entry.getKey(), entry.getValue());
+				if (entry.getValue() != records.get(entry.getKey()))
+					changed = true;
+			}
+			if (!found.keySet().equals(records.keySet()))
+				changed = true;
+			records.clear();
+			records.putAll(found);
+		} else if (Files.isRegularFile(input)) {
+			val attrs = Files.readAttributes(input, BasicFileAttributes.class);
+			val record = refresh(records.get(JAR_RECORD), input, attrs, jarScanner);
+			if (records.size() != 1 || record != records.get(JAR_RECORD))
+				changed = true;
+			records.clear();
+			records.put(JAR_RECORD, record);
+		} else if (!records.isEmpty()) {
+			records.clear();
+			changed = true;
+		}
+	}
+
+	/**
+	 * @return the existing record if it is still valid, otherwise a new record. May be called concurrently.
+	 */
+	private static Record refresh(@Nullable Record record, Path file, BasicFileAttributes attrs, Scanner scanner) throws IOException {
+		val size = attrs.size();
+		val lastModified = attrs.lastModifiedTime().toMillis();
+		if (record != null && record.size == size && record.lastModified == lastModified)
+			return record;
+
+		val hash = hash(file);
+		if (record != null && Arrays.equals(record.hash, hash))
+			return new Record(size, lastModified, hash, record.classNames);
+
+		val classNames = new ArrayList<String>();
+		scanner.scan(file, classNames);
+		return new Record(size, lastModified, hash, classNames);
+	}
+
+	public void addClassNamesTo(Collection<String> classNames) {
+		for (val record : records.values())
+			classNames.addAll(record.classNames);
+	}
+
+	/**
+	 * Writes the index file if it changed since it was loaded
+	 */
+	public void save() throws IOException {
+		if (!changed)
+			return;
+
+		Files.createDirectories(indexFile.getParent());
+		val temp = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				os.writeInt(MAGIC);
+				os.writeInt(VERSION);
+				os.writeUTF(input.toString());
+				os.writeInt(records.size());
+				for (val entry : records.entrySet()) {
+					val record = entry.getValue();
+					os.writeUTF(entry.getKey());
+					os.writeLong(record.size);
+					os.writeLong(record.lastModified);
+					os.writeByte(record.hash.length);
+					os.write(record.hash);
+					os.writeInt(record.classNames.size());
+					for (val className : record.classNames)
+						os.writeUTF(className);
+				}
+			}
+			Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		changed = false;
+	}
+
+	@FunctionalInterface
+	public interface Scanner {
+		void scan(Path file, Collection<String> classNames) throws IOException;
+	}
+
+	private static class Record {
+		final long size;
+		final long lastModified;
+		final byte[] hash;
+		final List<String> classNames;
+
+		Record(long size, long lastModified, byte[] hash, List<String> classNames) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash;
+			this.classNames = Collections.unmodifiableList(classNames);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package org.minimallycorrect.javatransformer.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.ImportDeclaration;
+
+import org.minimallycorrect.javatransformer.api.ClassPath;
+import org.minimallycorrect.javatransformer.api.Type;
+import org.minimallycorrect.javatransformer.internal.util.NodeUtil;
+
+/**
+ * Lookup tables for the imports of a compilation unit, and a cache of class names resolved against them
+ * <p>
+ * Shared by every {@link ResolutionContext} for the same compilation unit. Tables are rebuilt if the imports, package
+ * or {@link ClassPath} they were built from change.
+ */
+class ImportTable {
+	private static final DataKey<ImportTable> KEY = new DataKey<ImportTable>() {};
+	private final String packageName;
+	private final ClassPath classPath;
+	/**
+	 * Qualified names of single type imports, in declaration order
+	 */
+	final List<String> singleTypeImports;
+	/**
+	 * Qualified names of on-demand (wildcard) imports, without the trailing '.*', in declaration order
+	 */
+	final List<String> onDemandImports;
+	/**
+	 * Last segment of each single type import to its qualified name. The first import wins for duplicates.
+	 */
+	private final Map<String, String> simpleNames;
+	/**
+	 * Simple name of each class in the packages of the on-demand imports to its qualified name, built when first
+	 * needed. The first import wins for duplicates.
+	 */
+	@Nullable
+	private volatile Map<String, String> onDemandSimpleNames;
+	/**
+	 * Class names resolved in this compilation unit. Independent of type parameters, so shared between members.
+	 */
+	private final Map<String, Optional<Type>> resolvedClassTypes = new ConcurrentHashMap<>();
+	private final List<ImportDeclaration> imports;
+	private final ImportDeclaration[] importsSnapshot;
+
+	private ImportTable(String packageName, List<ImportDeclaration> imports, ClassPath classPath) {
+		this.packageName = packageName;
+		this.imports = imports;
+		this.importsSnapshot = imports.toArray(new ImportDeclaration[0]);
+		this.classPath = classPath;
+
+		val singleTypeImports = new ArrayList<String>();
+		val onDemandImports = new ArrayList<String>();
+		val simpleNames = new HashMap<String, String>();
+		for (ImportDeclaration anImport : importsSnapshot) {
+			if (anImport.isStatic())
+				continue;
+			val name = NodeUtil.qualifiedName(anImport.getName());
+			if (anImport.isAsterisk()) {
+				onDemandImports.add(name);
+				continue;
+			}
+			singleTypeImports.add(name);
+			val dot = name.lastIndexOf('.');
+			if (dot != -1)
+				simpleNames.putIfAbsent(name.substring(dot + 1), name);
+		}
+		this.singleTypeImports = Collections.unmodifiableList(singleTypeImports);
+		this.onDemandImports = Collections.unmodifiableList(onDemandImports);
+		this.simpleNames = simpleNames;
+	}
+
+	static ImportTable of(String packageName, List<ImportDeclaration> imports, ClassPath classPath) {
+		return new ImportTable(packageName, imports, classPath);
+	}
+
+	static ImportTable of(CompilationUnit compilationUnit, String packageName, ClassPath classPath) {
+		val imports = compilationUnit.getImports();
+		ImportTable table = compilationUnit.getData(KEY);
+		if (table == null || !table.matches(packageName, imports, classPath)) {
+			table = new ImportTable(packageName, imports, classPath);
+			compilationUnit.setData(KEY, table);
+		}
+		return table;
+	}
+
+	private boolean matches(String packageName, List<ImportDeclaration> imports, ClassPath classPath) {
+		if (this.imports != imports || importsSnapshot.length != imports.size() || this.classPath != classPath || !this.packageName.equals(packageName))
+			return false;
+		for (int i = 0; i < importsSnapshot.length; i++)
+			if (importsSnapshot[i] != imports.get(i))
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return qualified name of the single type import whose last segment is the given simple name, or null
+	 */
+	@Nullable
+	String getSingleTypeImport(String simpleName) {
+		return simpleNames.get(simpleName);
+	}
+
+	/**
+	 * @return qualified name of the class with the given simple name in the package of the first on-demand import which
+	 * has one, or null
+	 */
+	@Nullable
+	String getOnDemandImport(String simpleName) {
+		Map<String, String> onDemandSimpleNames = this.onDemandSimpleNames;
+		if (onDemandSimpleNames == null) {
+			onDemandSimpleNames = new HashMap<>();
+			// each package is listed once, instead of probing every import for every unresolved name
+			for (String importName : onDemandImports)
+				for (String className : classPath.getClassesInPackage(importName))
+					onDemandSimpleNames.putIfAbsent(className.substring(className.lastIndexOf('.') + 1), className);
+			this.onDemandSimpleNames = onDemandSimpleNames;
+		}
+		return onDemandSimpleNames.get(simpleName);
+	}
+
+	@Nullable
+	Optional<Type> getResolvedClassType(String name) {
+		return resolvedClassTypes.get(name);
+	}
+
+	void putResolvedClassType(String name, Optional<Type> type) {
+		resolvedClassTypes.put(name, type);
+	}
+}
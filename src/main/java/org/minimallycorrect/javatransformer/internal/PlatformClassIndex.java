@@ -0,0 +1,152 @@
+package org.minimallycorrect.javatransformer.internal;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import lombok.Getter;
+import lombok.SneakyThrows;
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+import org.minimallycorrect.javatransformer.api.TransformationException;
+import org.minimallycorrect.javatransformer.internal.util.ClassNameSet;
+import org.minimallycorrect.javatransformer.internal.util.JVMUtil;
+import org.minimallycorrect.javatransformer.internal.zip.ZipArchive;
+
+/**
+ * Index of the java.* and javax.* classes in a JDK, read from its jrt:/ file system (Java 9+) or from the jars in its
+ * lib folder (Java 8 and earlier) without loading any classes
+ * <p>
+ * Reading the jrt:/ file system of a JDK other than the running one requires the running JDK to be Java 9 or later.
+ * Indexes are cached for the lifetime of the JVM and keep their jars or file system open to read class files from.
+ */
+public class PlatformClassIndex {
+	private static final Map<Path, PlatformClassIndex> indexes = new ConcurrentHashMap<>();
+	@Getter
+	private final ClassNameSet classes;
+	private final List<ZipArchive> archives;
+	/**
+	 * Package name in internal format to the root of the module containing it
+	 */
+	private final Map<String, Path> packageRoots;
+
+	private PlatformClassIndex(Collection<String> classes, List<ZipArchive> archives, Map<String, Path> packageRoots) {
+		this.classes = ClassNameSet.of(classes);
+		this.archives = archives;
+		this.packageRoots = packageRoots;
+	}
+
+	/**
+	 * @param javaHome JDK or JRE home folder, or null for the running JDK
+	 */
+	public static PlatformClassIndex get(@Nullable Path javaHome) {
+		if (javaHome == null)
+			javaHome = Paths.get(System.getProperty("java.home"));
+		return indexes.computeIfAbsent(javaHome.normalize().toAbsolutePath(), PlatformClassIndex::load);
+	}
+
+	private static boolean isPlatformClass(String className) {
+		return className.startsWith("java.") || className.startsWith("javax.");
+	}
+
+	@SneakyThrows
+	private static PlatformClassIndex load(Path javaHome) {
+		if (Files.isRegularFile(javaHome.resolve("lib/modules")))
+			return loadModules(javaHome);
+		if (Files.isRegularFile(javaHome.resolve("lib/rt.jar")))
+			return loadJars(javaHome.resolve("lib"));
+		if (Files.isRegularFile(javaHome.resolve("jre/lib/rt.jar")))
+			return loadJars(javaHome.resolve("jre/lib"));
+		throw new TransformationException("Couldn't find platform classes in " + javaHome);
+	}
+
+	private static PlatformClassIndex loadJars(Path lib) throws IOException {
+		val classes = new ArrayList<String>();
+		val archives = new ArrayList<ZipArchive>();
+		try (DirectoryStream<Path> jars = Files.newDirectoryStream(lib, "*.jar")) {
+			for (Path jar : jars) {
+				val archive = ZipArchive.open(jar);
+				archives.add(archive);
+				for (val entry : archive.getEntries())
+					add(entry.getName(), classes);
+			}
+		} catch (IOException | RuntimeException e) {
+			for (ZipArchive archive : archives)
+				archive.close();
+			throw e;
+		}
+		return new PlatformClassIndex(classes, archives, Collections.emptyMap());
+	}
+
+	private static PlatformClassIndex loadModules(Path javaHome) throws IOException {
+		val running = javaHome.equals(Paths.get(System.getProperty("java.home")).normalize().toAbsolutePath());
+		val uri = URI.create("jrt:/");
+		FileSystem fileSystem = running ? FileSystems.getFileSystem(uri) : FileSystems.newFileSystem(uri, Collections.singletonMap("java.home", javaHome.toString()));
+		List<Path> modules;
+		try (Stream<Path> stream = Files.list(fileSystem.getPath("/modules"))) {
+			modules = new ArrayList<>();
+			stream.forEach(modules::add);
+		}
+		val classes = new ArrayList<String>();
+		val packageRoots = new HashMap<String, Path>();
+		for (Path module : modules)
+			try (Stream<Path> files = Files.walk(module)) {
+				files.forEach(it -> {
+					String fileName = module.relativize(it).toString();
+					if (!fileName.endsWith(".class"))
+						return;
+					int slash = fileName.lastIndexOf('/');
+					packageRoots.putIfAbsent(slash == -1 ? "" : fileName.substring(0, slash), module);
+					add(fileName, classes);
+				});
+			}
+		return new PlatformClassIndex(classes, Collections.emptyList(), packageRoots);
+	}
+
+	private static void add(String fileName, Collection<String> classes) {
+		if (!fileName.endsWith(".class") || fileName.endsWith("module-info.class") || fileName.endsWith("package-info.class"))
+			return;
+		val className = JVMUtil.fileNameToClassName(fileName);
+		if (isPlatformClass(className))
+			classes.add(className);
+	}
+
+	/**
+	 * Reads the class file of any class in this JDK, including those outside java.* and javax.*
+	 *
+	 * @param internalName class name in internal format, eg java/lang/String
+	 * @return the class file, or null if there is no such class
+	 */
+	@Nullable
+	public byte[] readClassFile(String internalName) throws IOException {
+		val fileName = internalName + ".class";
+		for (ZipArchive archive : archives) {
+			val entry = archive.getEntry(fileName);
+			if (entry != null)
+				return entry.read();
+		}
+		val slash = internalName.lastIndexOf('/');
+		val root = packageRoots.get(slash == -1 ? "" : internalName.substring(0, slash));
+		if (root != null) {
+			val file = root.resolve(fileName);
+			if (Files.isRegularFile(file))
+				return Files.readAllBytes(file);
+		}
+		return null;
+	}
+}
@@ -1,9 +1,13 @@
 package org.minimallycorrect.javatransformer.internal;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.val;
@@ -39,16 +43,24 @@ public class ResolutionContext {
 	private final Iterable<TypeParameter> typeParameters;
 	@NonNull
 	private final ClassPath classPath;
+	@Getter(AccessLevel.NONE)
+	private final ImportTable importTable;
+	/**
+	 * Results of {@link #resolve(String)}, which depend on this context's type parameters
+	 */
+	@Getter(AccessLevel.NONE)
+	private final Map<String, Type> resolved = new ConcurrentHashMap<>();
 
-	private ResolutionContext(String packageName, List<ImportDeclaration> imports, Iterable<TypeParameter> typeParameters, ClassPath classPath) {
+	private ResolutionContext(String packageName, List<ImportDeclaration> imports, Iterable<TypeParameter> typeParameters, ClassPath classPath, ImportTable importTable) {
 		this.packageName = packageName;
 		this.imports = imports;
 		this.typeParameters = typeParameters;
 		this.classPath = classPath;
+		this.importTable = importTable;
 	}
 
 	public static ResolutionContext of(String packageName, List<ImportDeclaration> imports, Iterable<TypeParameter> typeParameters, ClassPath classPath) {
-		return new ResolutionContext(packageName, imports, typeParameters, classPath);
+		return new ResolutionContext(packageName, imports, typeParameters, classPath, ImportTable.of(packageName, imports, classPath));
 	}
 
 	public static ResolutionContext of(Node targetNode, Node outerClassNode, ClassPath classPath) {
@@ -56,7 +68,7 @@ public class ResolutionContext {
 		String packageName = NodeUtil.qualifiedName(cu.getPackageDeclaration().get().getName());
 		List<TypeParameter> typeParameters = NodeUtil.getTypeParameters(targetNode);
 
-		return new ResolutionContext(packageName, cu.getImports(), typeParameters, classPath);
+		return new ResolutionContext(packageName, cu.getImports(), typeParameters, classPath, ImportTable.of(cu, packageName, classPath));
 	}
 
 	public static ResolutionContext of(Node node, ClassPath classPath) {
@@ -167,6 +179,15 @@ public class ResolutionContext {
 		if (name == null)
 			return null;
 
+		Type type = resolved.get(name);
+		if (type == null) {
+			type = resolveUncached(name);
+			resolved.put(name, type);
+		}
+		return type;
+	}
+
+	private Type resolveUncached(String name) {
 		int arrayCount = 0;
 		while (name.length() > 1 && name.lastIndexOf("[]") == name.length() - 2) {
 			arrayCount++;
@@ -224,32 +245,36 @@ public class ResolutionContext {
 
 	@Nullable
 	private Type resolveClassType(String name) {
-		String dotName = name;
-		String preDotName = null;
-		String postDotName = null;
-		if (name.indexOf('.') != -1) {
-			val index = name.indexOf('.');
-			preDotName = name.substring(0, index);
-			postDotName = name.substring(index);
-		} else {
-			dotName = '.' + name;
+		Optional<Type> type = importTable.getResolvedClassType(name);
+		if (type == null) {
+			type = Optional.ofNullable(resolveClassTypeUncached(name));
+			importTable.putResolvedClassType(name, type);
 		}
+		return type.orElse(null);
+	}
 
-		for (ImportDeclaration anImport : imports) {
-			if (anImport.isAsterisk() || anImport.isStatic())
-				continue;
-
-			String importName = classOf(anImport);
-			if (importName.endsWith(dotName)) {
+	@Nullable
+	private Type resolveClassTypeUncached(String name) {
+		if (name.indexOf('.') == -1) {
+			String importName = importTable.getSingleTypeImport(name);
+			if (importName != null)
 				return Type.of(importName);
-			}
+		} else {
+			val index = name.indexOf('.');
+			String preDotName = name.substring(0, index);
+			String postDotName = name.substring(index);
+			for (String importName : importTable.singleTypeImports) {
+				if (importName.endsWith(name)) {
+					return Type.of(importName);
+				}
 
-			// inner class in imported class
-			if (preDotName != null && importName.endsWith(preDotName)) {
-				String fullName = importName + postDotName;
-				Type type = resolveIfExists(fullName);
-				if (type != null) {
-					return type;
+				// inner class in imported class
+				if (importName.endsWith(preDotName)) {
+					String fullName = importName + postDotName;
+					Type type = resolveIfExists(fullName);
+					if (type != null) {
+						return type;
+					}
 				}
 			}
 		}
@@ -259,13 +284,16 @@ public class ResolutionContext {
 			return type;
 		}
 
-		for (ImportDeclaration anImport : imports) {
-			if (!anImport.isAsterisk() || anImport.isStatic())
-				continue;
-
-			type = resolveIfExists(classOf(anImport) + '.' + name);
-			if (type != null) {
-				return type;
+		if (name.indexOf('.') == -1) {
+			String importName = importTable.getOnDemandImport(name);
+			if (importName != null)
+				return Type.of(importName);
+		} else {
+			for (String importName : importTable.onDemandImports) {
+				type = resolveIfExists(importName + '.' + name);
+				if (type != null) {
+					return type;
+				}
 			}
 		}
 
@@ -283,11 +311,7 @@ public class ResolutionContext {
 
 	@Nullable
 	private Type resolveIfExists(String s) {
-		if (s.startsWith("java.") || s.startsWith("javax.")) {
-			try {
-				return Type.of(Class.forName(s).getName());
-			} catch (ClassNotFoundException ignored) {}
-		}
+		// java.* and javax.* classes come from the class path's platform class index
 		if (classPath.classExists(s))
 			return Type.of(s);
 		return null;
@@ -350,11 +374,7 @@ public class ResolutionContext {
 	}
 
 	public String typeToJavaParserType(String className) {
-		for (ImportDeclaration anImport : imports) {
-			if (anImport.isAsterisk() || anImport.isStatic())
-				continue;
-
-			String importName = NodeUtil.qualifiedName(anImport.getName());
+		for (String importName : importTable.singleTypeImports) {
 			if (className.startsWith(importName)) {
 				return className.replace(importName + ".", "");
 			}
@@ -1,10 +1,12 @@
 package org.minimallycorrect.javatransformer.internal.asm;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import lombok.val;
 
+import org.jetbrains.annotations.Nullable;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
@@ -21,21 +23,98 @@ import org.objectweb.asm.tree.analysis.Value;
 
 public class CombinedAnalyzer<V extends Value> implements Opcodes {
 	private final Interpreter<V> interpreter;
+	/**
+	 * Instructions to analyse by index, or null for all of them
+	 */
+	@Nullable
+	private final boolean[] analysed;
 	private Frame<V>[] frames;
 	private boolean[] queued;
 	private int[] queue;
 	private int top;
 
-	private CombinedAnalyzer(Interpreter<V> interpreter) {
+	private CombinedAnalyzer(Interpreter<V> interpreter, @Nullable boolean[] analysed) {
 		this.interpreter = interpreter;
+		this.analysed = analysed;
 	}
 
-	@SuppressWarnings("unchecked")
 	public static <A extends Value> Frame<A>[] analyze(Interpreter<A> interpreter, final String owner, final MethodNode m) throws AnalyzerException {
+		return analyze(interpreter, owner, m, null);
+	}
+
+	/**
+	 * @param analysed instructions to find frames for by index, which must include all instructions which can reach
+	 *                 them as found by {@link #findInstructionsReaching(MethodNode, int, int)}, or null for all
+	 *                 instructions. Frames of other instructions are left null.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <A extends Value> Frame<A>[] analyze(Interpreter<A> interpreter, final String owner, final MethodNode m, @Nullable boolean[] analysed) throws AnalyzerException {
 		if ((m.access & (ACC_ABSTRACT | ACC_NATIVE)) != 0 || m.instructions.size() == 0) {
 			return (Frame<A>[]) new Frame<?>[0];
 		}
-		return new CombinedAnalyzer<>(interpreter).analyze(owner, m);
+		return new CombinedAnalyzer<>(interpreter, analysed).analyze(owner, m);
+	}
+
+	/**
+	 * Finds the instructions which can reach any instruction from first to last through normal or exceptional control
+	 * flow. Frames only depend on the frames of instructions which can reach them, so analysing these is enough to
+	 * find the frames from first to last and the frame after last.
+	 *
+	 * @param first index of the first instruction
+	 * @param last  index of the last instruction
+	 * @return array of length {@code m.instructions.size() + 1} which is true for each instruction found, where the
+	 * last element is the frame after the last instruction
+	 */
+	public static boolean[] findInstructionsReaching(final MethodNode m, int first, int last) {
+		val insns = m.instructions;
+		int n = insns.size();
+		val predecessors = new Predecessors(n + 1);
+		int i = 0;
+		for (AbstractInsnNode insnNode = insns.getFirst(); insnNode != null; insnNode = insnNode.getNext(), i++) {
+			int insnOpcode = insnNode.getOpcode();
+			if (insnNode instanceof JumpInsnNode) {
+				if (insnOpcode != GOTO && insnOpcode != JSR)
+					predecessors.add(i, i + 1);
+				predecessors.add(i, insns.indexOf(((JumpInsnNode) insnNode).label));
+			} else if (insnNode instanceof LookupSwitchInsnNode) {
+				LookupSwitchInsnNode lsi = (LookupSwitchInsnNode) insnNode;
+				predecessors.add(i, insns.indexOf(lsi.dflt));
+				for (LabelNode label : lsi.labels)
+					predecessors.add(i, insns.indexOf(label));
+			} else if (insnNode instanceof TableSwitchInsnNode) {
+				TableSwitchInsnNode tsi = (TableSwitchInsnNode) insnNode;
+				predecessors.add(i, insns.indexOf(tsi.dflt));
+				for (LabelNode label : tsi.labels)
+					predecessors.add(i, insns.indexOf(label));
+			} else if (insnOpcode != ATHROW && (insnOpcode < IRETURN || insnOpcode > RETURN)) {
+				predecessors.add(i, i + 1);
+			}
+		}
+		for (TryCatchBlockNode tcb : m.tryCatchBlocks) {
+			int handler = insns.indexOf(tcb.handler);
+			int end = insns.indexOf(tcb.end);
+			for (int j = insns.indexOf(tcb.start); j < end; j++)
+				predecessors.add(j, handler);
+		}
+
+		val found = new boolean[n + 1];
+		val stack = new int[n + 1];
+		int top = 0;
+		for (int j = first; j <= last + 1 && j <= n; j++) {
+			found[j] = true;
+			stack[top++] = j;
+		}
+		while (top > 0) {
+			int insn = stack[--top];
+			for (int edge = predecessors.head[insn]; edge != -1; edge = predecessors.next[edge]) {
+				int from = predecessors.from[edge];
+				if (!found[from]) {
+					found[from] = true;
+					stack[top++] = from;
+				}
+			}
+		}
+		return found;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -154,6 +233,8 @@ public class CombinedAnalyzer<V extends Value> implements Opcodes {
 	}
 
 	private void merge(final int insn, final Frame<V> frame) throws AnalyzerException {
+		if (analysed != null && !analysed[insn])
+			return;
 		Frame<V> oldFrame = frames[insn];
 		boolean changes;
 
@@ -169,6 +250,33 @@ public class CombinedAnalyzer<V extends Value> implements Opcodes {
 		}
 	}
 
+	/**
+	 * Control flow edges, as a linked list of the edges into each instruction
+	 */
+	private static class Predecessors {
+		final int[] head;
+		int[] from;
+		int[] next;
+		int size;
+
+		Predecessors(int instructions) {
+			head = new int[instructions];
+			Arrays.fill(head, -1);
+			from = new int[instructions * 2];
+			next = new int[instructions * 2];
+		}
+
+		void add(int from, int to) {
+			if (size == this.from.length) {
+				this.from = Arrays.copyOf(this.from, size * 2);
+				next = Arrays.copyOf(next, size * 2);
+			}
+			this.from[size] = from;
+			next[size] = head[to];
+			head[to] = size++;
+		}
+	}
+
 	public static class Frame<V extends Value> extends org.objectweb.asm.tree.analysis.Frame<V> {
 		public Frame(int nLocals, int nStack) {
 			super(nLocals, nStack);
@@ -1,9 +1,9 @@
 package org.minimallycorrect.javatransformer.internal.asm;
 
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import lombok.val;
@@ -24,6 +24,11 @@ import org.objectweb.asm.tree.analysis.AnalyzerException;
 import org.objectweb.asm.tree.analysis.Interpreter;
 
 public class CombinedInterpreter extends Interpreter<CombinedValue> implements Opcodes {
+	/**
+	 * Value produced by each instruction, reused when the analyzer revisits the instruction
+	 */
+	private final Map<AbstractInsnNode, CombinedValue> produced = new IdentityHashMap<>();
+
 	public CombinedInterpreter() {
 		super(ASM5);
 	}
@@ -32,6 +37,17 @@ public class CombinedInterpreter extends Interpreter<CombinedValue> implements O
 		super(api);
 	}
 
+	@Nullable
+	private CombinedValue produce(Type type, AbstractInsnNode insn) {
+		val cached = produced.get(insn);
+		if (cached != null)
+			return cached;
+		val value = CombinedValue.of(type, insn);
+		if (value != null)
+			produced.put(insn, value);
+		return value;
+	}
+
 	@Nullable
 	@Override
 	public CombinedValue unaryOperation(final AbstractInsnNode insn,
@@ -45,22 +61,22 @@ public class CombinedInterpreter extends Interpreter<CombinedValue> implements O
 			case I2B:
 			case I2C:
 			case I2S:
-				return CombinedValue.of(Type.INT_TYPE, insn);
+				return produce(Type.INT_TYPE, insn);
 			case FNEG:
 			case I2F:
 			case L2F:
 			case D2F:
-				return CombinedValue.of(Type.FLOAT_TYPE, insn);
+				return produce(Type.FLOAT_TYPE, insn);
 			case LNEG:
 			case I2L:
 			case F2L:
 			case D2L:
-				return CombinedValue.of(Type.LONG_TYPE, insn);
+				return produce(Type.LONG_TYPE, insn);
 			case DNEG:
 			case I2D:
 			case L2D:
 			case F2D:
-				return CombinedValue.of(Type.DOUBLE_TYPE, insn);
+				return produce(Type.DOUBLE_TYPE, insn);
 			case IFEQ:
 			case IFNE:
 			case IFLT:
@@ -77,40 +93,40 @@ public class CombinedInterpreter extends Interpreter<CombinedValue> implements O
 			case PUTSTATIC:
 				return null;
 			case GETFIELD:
-				return CombinedValue.of(Type.getType(((FieldInsnNode) insn).desc), insn);
+				return produce(Type.getType(((FieldInsnNode) insn).desc), insn);
 			case NEWARRAY:
 				switch (((IntInsnNode) insn).operand) {
 					case T_BOOLEAN:
-						return CombinedValue.of(Type.getType("[Z"), insn);
+						return produce(Type.getType("[Z"), insn);
 					case T_CHAR:
-						return CombinedValue.of(Type.getType("[C"), insn);
+						return produce(Type.getType("[C"), insn);
 					case T_BYTE:
-						return CombinedValue.of(Type.getType("[B"), insn);
+						return produce(Type.getType("[B"), insn);
 					case T_SHORT:
-						return CombinedValue.of(Type.getType("[S"), insn);
+						return produce(Type.getType("[S"), insn);
 					case T_INT:
-						return CombinedValue.of(Type.getType("[I"), insn);
+						return produce(Type.getType("[I"), insn);
 					case T_FLOAT:
-						return CombinedValue.of(Type.getType("[F"), insn);
+						return produce(Type.getType("[F"), insn);
 					case T_DOUBLE:
-						return CombinedValue.of(Type.getType("[D"), insn);
+						return produce(Type.getType("[D"), insn);
 					case T_LONG:
-						return CombinedValue.of(Type.getType("[J"), insn);
+						return produce(Type.getType("[J"), insn);
 					default:
 						throw new AnalyzerException(insn, "Invalid array type");
 				}
 			case ANEWARRAY:
 				String desc = ((TypeInsnNode) insn).desc;
-				return CombinedValue.of(Type.getType("[" + Type.getObjectType(desc)), insn);
+				return produce(Type.getType("[" + Type.getObjectType(desc)), insn);
 			case ARRAYLENGTH:
-				return CombinedValue.of(Type.INT_TYPE, insn);
+				return produce(Type.INT_TYPE, insn);
 			case ATHROW:
 				return null;
 			case CHECKCAST:
 				desc = ((TypeInsnNode) insn).desc;
-				return CombinedValue.of(Type.getObjectType(desc), Collections.singleton(insn));
+				return produce(Type.getObjectType(desc), insn);
 			case INSTANCEOF:
-				return CombinedValue.of(Type.INT_TYPE, insn);
+				return produce(Type.INT_TYPE, insn);
 			case MONITORENTER:
 			case MONITOREXIT:
 			case IFNULL:
@@ -132,11 +148,11 @@ public class CombinedInterpreter extends Interpreter<CombinedValue> implements O
 	public CombinedValue naryOperation(final AbstractInsnNode insn, final List<? extends CombinedValue> values) throws AnalyzerException {
 		int opcode = insn.getOpcode();
 		if (opcode == MULTIANEWARRAY) {
-			return CombinedValue.of(Type.getType(((MultiANewArrayInsnNode) insn).desc), insn);
+			return produce(Type.getType(((MultiANewArrayInsnNode) insn).desc), insn);
 		} else if (opcode == INVOKEDYNAMIC) {
-			return CombinedValue.of(Type.getReturnType(((InvokeDynamicInsnNode) insn).desc), insn);
+			return produce(Type.getReturnType(((InvokeDynamicInsnNode) insn).desc), insn);
 		} else {
-			return CombinedValue.of(Type.getReturnType(((MethodInsnNode) insn).desc), insn);
+			return produce(Type.getReturnType(((MethodInsnNode) insn).desc), insn);
 		}
 	}
 
@@ -155,7 +171,7 @@ public class CombinedInterpreter extends Interpreter<CombinedValue> implements O
 	public CombinedValue newOperation(final AbstractInsnNode insn) throws AnalyzerException {
 		switch (insn.getOpcode()) {
 			case ACONST_NULL:
-				return CombinedValue.of(CombinedValue.OBJECT_TYPE, insn);
+				return produce(CombinedValue.OBJECT_TYPE, insn);
 			case ICONST_M1:
 			case ICONST_0:
 			case ICONST_1:
@@ -165,40 +181,40 @@ public class CombinedInterpreter extends Interpreter<CombinedValue> implements O
 			case ICONST_5:
 			case BIPUSH:
 			case SIPUSH:
-				return CombinedValue.of(Type.INT_TYPE, insn);
+				return produce(Type.INT_TYPE, insn);
 			case LCONST_0:
 			case LCONST_1:
-				return CombinedValue.of(Type.LONG_TYPE, insn);
+				return produce(Type.LONG_TYPE, insn);
 			case FCONST_0:
 			case FCONST_1:
 			case FCONST_2:
-				return CombinedValue.of(Type.FLOAT_TYPE, insn);
+				return produce(Type.FLOAT_TYPE, insn);
 			case DCONST_0:
 			case DCONST_1:
-				return CombinedValue.of(Type.DOUBLE_TYPE, insn);
+				return produce(Type.DOUBLE_TYPE, insn);
 			case LDC:
 				Object cst = ((LdcInsnNode) insn).cst;
 				if (cst instanceof Integer) {
-					return CombinedValue.of(Type.INT_TYPE, insn);
+					return produce(Type.INT_TYPE, insn);
 				} else if (cst instanceof Float) {
-					return CombinedValue.of(Type.FLOAT_TYPE, insn);
+					return produce(Type.FLOAT_TYPE, insn);
 				} else if (cst instanceof Long) {
-					return CombinedValue.of(Type.LONG_TYPE, insn);
+					return produce(Type.LONG_TYPE, insn);
 				} else if (cst instanceof Double) {
-					return CombinedValue.of(Type.DOUBLE_TYPE, insn);
+					return produce(Type.DOUBLE_TYPE, insn);
 				} else if (cst instanceof String) {
-					return CombinedValue.of(Type.getObjectType("java/lang/String"), insn);
+					return produce(Type.getObjectType("java/lang/String"), insn);
 				} else if (cst instanceof Type) {
 					int sort = ((Type) cst).getSort();
 					if (sort == Type.OBJECT || sort == Type.ARRAY) {
-						return CombinedValue.of(Type.getObjectType("java/lang/Class"), insn);
+						return produce(Type.getObjectType("java/lang/Class"), insn);
 					} else if (sort == Type.METHOD) {
-						return CombinedValue.of(Type.getObjectType("java/lang/invoke/MethodType"), insn);
+						return produce(Type.getObjectType("java/lang/invoke/MethodType"), insn);
 					} else {
 						throw new IllegalArgumentException("Illegal LDC constant " + cst);
 					}
 				} else if (cst instanceof Handle) {
-					return CombinedValue.of(Type.getObjectType("java/lang/invoke/MethodHandle"), insn);
+					return produce(Type.getObjectType("java/lang/invoke/MethodHandle"), insn);
 				} else {
 					throw new IllegalArgumentException("Illegal LDC constant "
 						+ cst);
@@ -206,9 +222,9 @@ public class CombinedInterpreter extends Interpreter<CombinedValue> implements O
 			case JSR:
 				throw new UnsupportedOperationException("JSR not supported. Use JSRInlinerAdapter to inline JSR subroutines.");
 			case GETSTATIC:
-				return CombinedValue.of(Type.getType(((FieldInsnNode) insn).desc), insn);
+				return produce(Type.getType(((FieldInsnNode) insn).desc), insn);
 			case NEW:
-				return CombinedValue.of(Type.getObjectType(((TypeInsnNode) insn).desc), insn);
+				return produce(Type.getObjectType(((TypeInsnNode) insn).desc), insn);
 			default:
 				throw new Error("Internal error.");
 		}
@@ -242,14 +258,14 @@ public class CombinedInterpreter extends Interpreter<CombinedValue> implements O
 			case IAND:
 			case IOR:
 			case IXOR:
-				return CombinedValue.of(Type.INT_TYPE, insn);
+				return produce(Type.INT_TYPE, insn);
 			case FALOAD:
 			case FADD:
 			case FSUB:
 			case FMUL:
 			case FDIV:
 			case FREM:
-				return CombinedValue.of(Type.FLOAT_TYPE, insn);
+				return produce(Type.FLOAT_TYPE, insn);
 			case LALOAD:
 			case LADD:
 			case LSUB:
@@ -262,22 +278,22 @@ public class CombinedInterpreter extends Interpreter<CombinedValue> implements O
 			case LAND:
 			case LOR:
 			case LXOR:
-				return CombinedValue.of(Type.LONG_TYPE, insn);
+				return produce(Type.LONG_TYPE, insn);
 			case DALOAD:
 			case DADD:
 			case DSUB:
 			case DMUL:
 			case DDIV:
 			case DREM:
-				return CombinedValue.of(Type.DOUBLE_TYPE, insn);
+				return produce(Type.DOUBLE_TYPE, insn);
 			case AALOAD:
-				return CombinedValue.of(CombinedValue.OBJECT_TYPE, insn);
+				return produce(CombinedValue.OBJECT_TYPE, insn);
 			case LCMP:
 			case FCMPL:
 			case FCMPG:
 			case DCMPL:
 			case DCMPG:
-				return CombinedValue.of(Type.INT_TYPE, insn);
+				return produce(Type.INT_TYPE, insn);
 			case IF_ICMPEQ:
 			case IF_ICMPNE:
 			case IF_ICMPLT:
@@ -303,9 +319,10 @@ public class CombinedInterpreter extends Interpreter<CombinedValue> implements O
 		if (!Objects.equals(type, w.getType()))
 			type = w.isReference() && v.isReference() ? CombinedValue.OBJECT_TYPE : null;
 
-		val s = new HashSet<AbstractInsnNode>();
-		s.addAll(v.insns);
-		s.addAll(w.insns);
-		return CombinedValue.of(type, s);
+		val insns = InstructionSet.union(v.insns, w.insns);
+		// returning the same value lets the analyzer see that the frame hasn't changed without comparing sets
+		if (insns == v.insns && Objects.equals(type, v.getType()))
+			return v;
+		return CombinedValue.of(type, insns);
 	}
 }
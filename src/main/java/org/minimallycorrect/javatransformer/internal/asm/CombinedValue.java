@@ -1,6 +1,5 @@
 package org.minimallycorrect.javatransformer.internal.asm;
 
-import java.util.Collections;
 import java.util.Objects;
 import java.util.Set;
 
@@ -31,12 +30,19 @@ public class CombinedValue implements Value, Opcodes {
 			return "Pre-filled value. Method parameter, this, or caught exception/NOP";
 		}
 	};
-	private static final CombinedValue UNINITIALIZED_VALUE = new CombinedValue(null, Collections.emptySet());
-	private static final CombinedValue INT_VALUE = new CombinedValue(Type.INT_TYPE, Collections.emptySet());
-	private static final CombinedValue FLOAT_VALUE = new CombinedValue(Type.FLOAT_TYPE, Collections.emptySet());
-	private static final CombinedValue LONG_VALUE = new CombinedValue(Type.LONG_TYPE, Collections.emptySet());
-	private static final CombinedValue DOUBLE_VALUE = new CombinedValue(Type.DOUBLE_TYPE, Collections.emptySet());
-	private static final CombinedValue REFERENCE_VALUE = new CombinedValue(OBJECT_TYPE, Collections.emptySet());
+	private static final CombinedValue UNINITIALIZED_VALUE = new CombinedValue(null, InstructionSet.EMPTY);
+	private static final CombinedValue INT_VALUE = new CombinedValue(Type.INT_TYPE, InstructionSet.EMPTY);
+	private static final CombinedValue FLOAT_VALUE = new CombinedValue(Type.FLOAT_TYPE, InstructionSet.EMPTY);
+	private static final CombinedValue LONG_VALUE = new CombinedValue(Type.LONG_TYPE, InstructionSet.EMPTY);
+	private static final CombinedValue DOUBLE_VALUE = new CombinedValue(Type.DOUBLE_TYPE, InstructionSet.EMPTY);
+	private static final CombinedValue REFERENCE_VALUE = new CombinedValue(OBJECT_TYPE, InstructionSet.EMPTY);
+	private static final InstructionSet PREFILLED_SET = InstructionSet.of(PREFILLED);
+	private static final CombinedValue PREFILLED_UNINITIALIZED_VALUE = new CombinedValue(null, PREFILLED_SET);
+	private static final CombinedValue PREFILLED_INT_VALUE = new CombinedValue(Type.INT_TYPE, PREFILLED_SET);
+	private static final CombinedValue PREFILLED_FLOAT_VALUE = new CombinedValue(Type.FLOAT_TYPE, PREFILLED_SET);
+	private static final CombinedValue PREFILLED_LONG_VALUE = new CombinedValue(Type.LONG_TYPE, PREFILLED_SET);
+	private static final CombinedValue PREFILLED_DOUBLE_VALUE = new CombinedValue(Type.DOUBLE_TYPE, PREFILLED_SET);
+	private static final CombinedValue PREFILLED_REFERENCE_VALUE = new CombinedValue(OBJECT_TYPE, PREFILLED_SET);
 	/**
 	 * The instructions that can produce this value. For example, for the Java code below, the instructions that can produce the value of <tt>i</tt> at line 5 are the txo ISTORE instructions at line 1 and 3:
 	 * 
@@ -50,24 +56,44 @@ public class CombinedValue implements Value, Opcodes {
 	 * 
 	 * This field is a set of {@link AbstractInsnNode} objects.
 	 */
-	public final Set<AbstractInsnNode> insns;
+	public final InstructionSet insns;
 	@Nullable
 	private final Type type;
 
 	protected CombinedValue(@Nullable final Type type, final Set<AbstractInsnNode> insns) {
 		this.type = type;
-		this.insns = insns;
+		this.insns = InstructionSet.copyOf(insns);
 	}
 
 	@Nullable
 	@Deprecated
 	public static CombinedValue of(@Nullable Type type) {
-		return of(type, Collections.emptySet());
+		return of(type, InstructionSet.EMPTY);
 	}
 
 	@Nullable
 	public static CombinedValue of(@Nullable Type type, AbstractInsnNode insn) {
-		return of(type, Collections.singleton(insn));
+		if (insn == PREFILLED) {
+			// method parameters, this and caught exceptions are created for every analysed method
+			if (type == null)
+				return PREFILLED_UNINITIALIZED_VALUE;
+			switch (type.getSort()) {
+				case Type.VOID:
+					return null;
+				case Type.INT:
+					return PREFILLED_INT_VALUE;
+				case Type.FLOAT:
+					return PREFILLED_FLOAT_VALUE;
+				case Type.LONG:
+					return PREFILLED_LONG_VALUE;
+				case Type.DOUBLE:
+					return PREFILLED_DOUBLE_VALUE;
+				case Type.OBJECT:
+					if (type.getInternalName().equals("java/lang/Object"))
+						return PREFILLED_REFERENCE_VALUE;
+			}
+		}
+		return of(type, InstructionSet.of(insn));
 	}
 
 	@Nullable
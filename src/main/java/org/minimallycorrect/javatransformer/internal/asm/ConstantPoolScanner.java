@@ -0,0 +1,139 @@
+package org.minimallycorrect.javatransformer.internal.asm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import lombok.NonNull;
+import lombok.val;
+
+import org.minimallycorrect.javatransformer.internal.util.JVMUtil;
+
+/**
+ * Checks whether a class file's constant pool contains any of a set of strings without parsing the class
+ * <p>
+ * Every annotation on a class or its members has its descriptor in the constant pool, so a class whose pool doesn't
+ * contain an annotation's descriptor can't be annotated with it. The reverse doesn't hold, as the descriptor may also be
+ * used for other reasons, so this is only a filter before reading the class.
+ */
+public final class ConstantPoolScanner {
+	private static final int CONSTANT_UTF8 = 1;
+	private final byte[][] constants;
+
+	/**
+	 * @param constants strings to find in UTF8 constants
+	 */
+	public ConstantPoolScanner(@NonNull Collection<String> constants) {
+		this.constants = new byte[constants.size()][];
+		int i = 0;
+		for (String constant : constants)
+			this.constants[i++] = toModifiedUtf8(constant);
+	}
+
+	/**
+	 * @param annotations fully qualified annotation names
+	 */
+	public static ConstantPoolScanner forAnnotations(Collection<String> annotations) {
+		val descriptors = new ArrayList<String>(annotations.size());
+		for (String annotation : annotations)
+			descriptors.add('L' + JVMUtil.classNameToSlashName(annotation) + ';');
+		return new ConstantPoolScanner(descriptors);
+	}
+
+	/**
+	 * Encodes a string as in class files, which differs from UTF-8 for '\0' and supplementary characters
+	 */
+	private static byte[] toModifiedUtf8(String constant) {
+		val bytes = new ByteArrayOutputStream(constant.length() + 2);
+		try (DataOutputStream dos = new DataOutputStream(bytes)) {
+			dos.writeUTF(constant);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		val encoded = bytes.toByteArray();
+		val withoutLength = new byte[encoded.length - 2];
+		System.arraycopy(encoded, 2, withoutLength, 0, withoutLength.length);
+		return withoutLength;
+	}
+
+	private static int readUnsignedShort(byte[] bytes, int offset) {
+		return ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+	}
+
+	/**
+	 * @return true if the constant pool contains any of the strings, or if the class file can't be scanned
+	 */
+	public boolean containsAny(byte[] classFile) {
+		if (constants.length == 0)
+			return false;
+		try {
+			if (readUnsignedShort(classFile, 0) != 0xCAFE || readUnsignedShort(classFile, 2) != 0xBABE)
+				return true;
+			int count = readUnsignedShort(classFile, 8);
+			int offset = 10;
+			for (int i = 1; i < count; i++) {
+				int tag = classFile[offset];
+				switch (tag) {
+					case CONSTANT_UTF8:
+						int length = readUnsignedShort(classFile, offset + 1);
+						if (matches(classFile, offset + 3, length))
+							return true;
+						offset += 3 + length;
+						break;
+					// Class, String, MethodType, Module, Package
+					case 7:
+					case 8:
+					case 16:
+					case 19:
+					case 20:
+						offset += 3;
+						break;
+					// MethodHandle
+					case 15:
+						offset += 4;
+						break;
+					// Integer, Float, Fieldref, Methodref, InterfaceMethodref, NameAndType, Dynamic, InvokeDynamic
+					case 3:
+					case 4:
+					case 9:
+					case 10:
+					case 11:
+					case 12:
+					case 17:
+					case 18:
+						offset += 5;
+						break;
+					// Long, Double, which take two entries
+					case 5:
+					case 6:
+						offset += 9;
+						i++;
+						break;
+					default:
+						// unknown constant, let the class reader report it
+						return true;
+				}
+			}
+			return false;
+		} catch (ArrayIndexOutOfBoundsException e) {
+			// truncated, let the class reader report it
+			return true;
+		}
+	}
+
+	private boolean matches(byte[] classFile, int offset, int length) {
+		outer:
+		for (byte[] constant : constants) {
+			if (constant.length != length)
+				continue;
+			for (int i = 0; i < length; i++)
+				if (classFile[offset + i] != constant[i])
+					continue outer;
+			return true;
+		}
+		return false;
+	}
+}
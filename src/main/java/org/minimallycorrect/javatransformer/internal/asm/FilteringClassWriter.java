@@ -8,15 +8,35 @@ import lombok.val;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
 
+import org.minimallycorrect.javatransformer.api.ClassPath;
+import org.minimallycorrect.javatransformer.internal.ClassHierarchy;
+
 public class FilteringClassWriter extends ClassWriter {
 	public final Map<String, String> filters = new HashMap<>();
+	private final ClassHierarchy hierarchy;
 
 	public FilteringClassWriter(int flags) {
-		super(flags);
+		this(flags, DefaultHierarchy.INSTANCE);
 	}
 
 	public FilteringClassWriter(ClassReader classReader, int flags) {
+		this(classReader, flags, DefaultHierarchy.INSTANCE);
+	}
+
+	/**
+	 * @param hierarchy used to find common superclasses when computing frames
+	 */
+	public FilteringClassWriter(int flags, ClassHierarchy hierarchy) {
+		super(flags);
+		this.hierarchy = hierarchy;
+	}
+
+	/**
+	 * @param hierarchy used to find common superclasses when computing frames
+	 */
+	public FilteringClassWriter(ClassReader classReader, int flags, ClassHierarchy hierarchy) {
 		super(classReader, flags);
+		this.hierarchy = hierarchy;
 	}
 
 	public static void addFilter(Map<String, String> filters, String a, String b) {
@@ -66,11 +86,18 @@ public class FilteringClassWriter extends ClassWriter {
 		return super.newUTF8(replace(value));
 	}
 
+	/**
+	 * Never loads classes, unlike the default implementation
+	 */
 	@Override
 	protected String getCommonSuperClass(final String a, final String b) {
-		if ((a.indexOf('.') != -1 && !a.startsWith("java.")) || (b.indexOf('.') != -1 && !b.startsWith("java.")))
-			throw new UnsupportedOperationException();
+		return hierarchy.getCommonSuperClass(a, b);
+	}
 
-		return super.getCommonSuperClass(a, b);
+	/**
+	 * Hierarchy of the platform classes only, for writers created without one
+	 */
+	private static class DefaultHierarchy {
+		static final ClassHierarchy INSTANCE = new ClassPath().getClassHierarchy();
 	}
 }
@@ -0,0 +1,95 @@
+package org.minimallycorrect.javatransformer.internal.asm;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.analysis.Frame;
+
+/**
+ * Frames from analysing a method, looked up by instruction instead of by index
+ * <p>
+ * {@link InsnList#indexOf(AbstractInsnNode)} rebuilds its index after every edit, so lookups by index cost O(n) while
+ * a method is being changed, and give the wrong frame once instructions before the target are inserted or removed.
+ * Lookups here are O(1) and unaffected by edits to other instructions.
+ */
+public final class InstructionFrames {
+	private final Frame<CombinedValue>[] frames;
+	/**
+	 * Frame of each analysed instruction, which is null if the instruction is unreachable
+	 */
+	private final Map<AbstractInsnNode, Frame<CombinedValue>> byInstruction;
+	/**
+	 * Frame after the last instruction, if execution can fall off the end of the method
+	 */
+	@Nullable
+	private final Frame<CombinedValue> end;
+	private final boolean endAnalysed;
+
+	/**
+	 * @param frames frames for the instructions, as they are when this is created, by index
+	 */
+	public InstructionFrames(InsnList instructions, Frame<CombinedValue>[] frames) {
+		this(instructions, frames, null);
+	}
+
+	/**
+	 * @param analysed which instructions were analysed by index, or null if all of them were
+	 */
+	public InstructionFrames(InsnList instructions, Frame<CombinedValue>[] frames, @Nullable boolean[] analysed) {
+		this.frames = frames;
+		byInstruction = new IdentityHashMap<>(frames.length);
+		int i = 0;
+		for (AbstractInsnNode insn = instructions.getFirst(); insn != null && i < frames.length; insn = insn.getNext(), i++)
+			if (analysed == null || analysed[i])
+				byInstruction.put(insn, frames[i]);
+		end = i < frames.length ? frames[i] : null;
+		endAnalysed = analysed == null || (i < analysed.length && analysed[i]);
+	}
+
+	/**
+	 * @return the frame before the given instruction is executed, or null if it is unreachable, wasn't analysed or was
+	 * added after the method was analysed
+	 */
+	@Nullable
+	public Frame<CombinedValue> get(AbstractInsnNode insn) {
+		return byInstruction.get(insn);
+	}
+
+	/**
+	 * @return the frame after the given instruction is executed, which is the frame at the end of the method for the
+	 * last instruction
+	 */
+	@Nullable
+	public Frame<CombinedValue> getAfter(AbstractInsnNode insn) {
+		val next = insn.getNext();
+		return next == null ? end : byInstruction.get(next);
+	}
+
+	/**
+	 * @return whether the frames from first to last and the frame after last were analysed
+	 */
+	public boolean isAnalysed(AbstractInsnNode first, AbstractInsnNode last) {
+		AbstractInsnNode current = first;
+		while (true) {
+			if (!byInstruction.containsKey(current))
+				return false;
+			if (current == last)
+				break;
+			current = current.getNext();
+		}
+		val next = last.getNext();
+		return next == null ? endAnalysed : byInstruction.containsKey(next);
+	}
+
+	/**
+	 * @return frames by instruction index, which are only valid until the method is changed
+	 */
+	public Frame<CombinedValue>[] toArray() {
+		return frames;
+	}
+}
@@ -0,0 +1,191 @@
+package org.minimallycorrect.javatransformer.internal.asm;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import lombok.val;
+
+import org.objectweb.asm.tree.AbstractInsnNode;
+
+/**
+ * Immutable set of instructions compared by identity, stored as an array sorted by identity hash code
+ * <p>
+ * Used for the producers of a {@link CombinedValue}. {@link #union(InstructionSet, InstructionSet)} returns one of its
+ * inputs when it already contains the other, which is the usual case at control flow joins once analysis of a loop has
+ * settled, so merging frames doesn't allocate.
+ */
+public final class InstructionSet extends AbstractSet<AbstractInsnNode> {
+	public static final InstructionSet EMPTY = new InstructionSet(new AbstractInsnNode[0]);
+	private static final Comparator<AbstractInsnNode> BY_IDENTITY_HASH = Comparator.comparingInt(System::identityHashCode);
+	private final AbstractInsnNode[] insns;
+	private int hashCode;
+
+	private InstructionSet(AbstractInsnNode[] insns) {
+		this.insns = insns;
+	}
+
+	public static InstructionSet of(AbstractInsnNode insn) {
+		return new InstructionSet(new AbstractInsnNode[]{insn});
+	}
+
+	public static InstructionSet copyOf(Collection<AbstractInsnNode> insns) {
+		if (insns instanceof InstructionSet)
+			return (InstructionSet) insns;
+		if (insns.isEmpty())
+			return EMPTY;
+		Set<AbstractInsnNode> unique = Collections.newSetFromMap(new IdentityHashMap<>(insns.size()));
+		unique.addAll(insns);
+		val array = unique.toArray(new AbstractInsnNode[0]);
+		Arrays.sort(array, BY_IDENTITY_HASH);
+		return new InstructionSet(array);
+	}
+
+	/**
+	 * @return a set containing the instructions of both sets, which is a or b if one contains the other
+	 */
+	public static InstructionSet union(InstructionSet a, InstructionSet b) {
+		if (a == b || b.insns.length == 0)
+			return a;
+		if (a.insns.length == 0)
+			return b;
+		val size = unionSize(a.insns, b.insns);
+		if (size == -1) {
+			// distinct instructions with the same identity hash code, rare enough not to handle in the merge below
+			val both = Collections.newSetFromMap(new IdentityHashMap<AbstractInsnNode, Boolean>());
+			both.addAll(a);
+			both.addAll(b);
+			if (both.size() == a.insns.length)
+				return a;
+			if (both.size() == b.insns.length)
+				return b;
+			return copyOf(both);
+		}
+		if (size == a.insns.length)
+			return a;
+		if (size == b.insns.length)
+			return b;
+
+		val x = a.insns;
+		val y = b.insns;
+		val result = new AbstractInsnNode[size];
+		int i = 0, j = 0, k = 0;
+		while (i < x.length && j < y.length) {
+			int hx = System.identityHashCode(x[i]);
+			int hy = System.identityHashCode(y[j]);
+			if (hx < hy) {
+				result[k++] = x[i++];
+			} else if (hy < hx) {
+				result[k++] = y[j++];
+			} else {
+				result[k++] = x[i++];
+				j++;
+			}
+		}
+		while (i < x.length)
+			result[k++] = x[i++];
+		while (j < y.length)
+			result[k++] = y[j++];
+		return new InstructionSet(result);
+	}
+
+	/**
+	 * @return the size of the union of two sorted arrays, or -1 if different instructions in them have the same hash
+	 */
+	private static int unionSize(AbstractInsnNode[] x, AbstractInsnNode[] y) {
+		int i = 0, j = 0, size = 0;
+		while (i < x.length && j < y.length) {
+			int hx = System.identityHashCode(x[i]);
+			int hy = System.identityHashCode(y[j]);
+			if (hx < hy) {
+				i++;
+			} else if (hy < hx) {
+				j++;
+			} else if (x[i] == y[j]) {
+				i++;
+				j++;
+			} else {
+				return -1;
+			}
+			size++;
+		}
+		return size + (x.length - i) + (y.length - j);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		val hash = System.identityHashCode(o);
+		int low = 0;
+		int high = insns.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midHash = System.identityHashCode(insns[mid]);
+			if (midHash < hash) {
+				low = mid + 1;
+			} else if (midHash > hash) {
+				high = mid - 1;
+			} else {
+				for (int i = mid; i >= 0 && System.identityHashCode(insns[i]) == hash; i--)
+					if (insns[i] == o)
+						return true;
+				for (int i = mid + 1; i < insns.length && System.identityHashCode(insns[i]) == hash; i++)
+					if (insns[i] == o)
+						return true;
+				return false;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Iterator<AbstractInsnNode> iterator() {
+		return new Iterator<AbstractInsnNode>() {
+			private int index;
+
+			@Override
+			public boolean hasNext() {
+				return index < insns.length;
+			}
+
+			@Override
+			public AbstractInsnNode next() {
+				if (index >= insns.length)
+					throw new NoSuchElementException();
+				return insns[index++];
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return insns.length;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (o instanceof InstructionSet) {
+			val other = ((InstructionSet) o).insns;
+			if (other.length != insns.length)
+				return false;
+			if (Arrays.equals(other, insns))
+				return true;
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		int hashCode = this.hashCode;
+		if (hashCode == 0)
+			this.hashCode = hashCode = super.hashCode();
+		return hashCode;
+	}
+}
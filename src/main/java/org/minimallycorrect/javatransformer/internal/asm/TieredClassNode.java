@@ -0,0 +1,211 @@
+package org.minimallycorrect.javatransformer.internal.asm;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import lombok.NonNull;
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import org.minimallycorrect.javatransformer.api.EntryMetrics;
+import org.minimallycorrect.javatransformer.internal.util.MetricsRecorder;
+
+/**
+ * Supplies a {@link ClassNode} read without method code, which is only read into the same method nodes when it's needed
+ * <p>
+ * Transforms which only change names, access flags or other members don't pay for reading and expanding the frames of
+ * every method. Edits made to the class before its code is read are kept.
+ */
+public class TieredClassNode implements Supplier<ClassNode> {
+	@NonNull
+	private final Supplier<byte[]> data;
+	@Nullable
+	private ClassReader reader;
+	@Nullable
+	private ClassNode node;
+	/**
+	 * Methods in the order they were read, so code can be matched to them after methods are added or removed
+	 */
+	@Nullable
+	private ReadMethod[] readMethods;
+	private final Map<MethodNode, ReadMethod> readMethodsByNode = new IdentityHashMap<>();
+	private boolean hasCode;
+
+	public TieredClassNode(@NonNull Supplier<byte[]> data) {
+		this.data = data;
+	}
+
+	/**
+	 * @return the class node, without method code unless it has already been read
+	 */
+	@Override
+	public synchronized ClassNode get() {
+		val node = this.node;
+		if (node != null)
+			return node;
+
+		val metrics = MetricsRecorder.current();
+		val previous = metrics == null ? null : metrics.enter(EntryMetrics.Phase.PARSE);
+		try {
+			val reader = new ClassReader(data.get());
+			val read = new ClassNode();
+			reader.accept(read, ClassReader.SKIP_CODE);
+			val readMethods = new ReadMethod[read.methods.size()];
+			for (int i = 0; i < readMethods.length; i++) {
+				val method = new ReadMethod(read.methods.get(i));
+				readMethods[i] = method;
+				readMethodsByNode.put(method.node, method);
+			}
+			this.reader = reader;
+			this.readMethods = readMethods;
+			return this.node = read;
+		} finally {
+			if (metrics != null)
+				metrics.exit(previous);
+		}
+	}
+
+	/**
+	 * @return the class node with method code and expanded frames, for analysis and editing
+	 */
+	public ClassNode getWithCode() {
+		return getWithCode(true);
+	}
+
+	/**
+	 * @param expandFrames false if the code will only be written back out, in which case frames are left compressed.
+	 *                     Ignored if the code has already been read.
+	 * @return the class node with method code
+	 */
+	public synchronized ClassNode getWithCode(boolean expandFrames) {
+		val node = get();
+		if (hasCode)
+			return node;
+
+		val withCode = new ClassNode();
+		val metrics = MetricsRecorder.current();
+		val previous = metrics == null ? null : metrics.enter(EntryMetrics.Phase.PARSE);
+		try {
+			getReader().accept(withCode, expandFrames ? ClassReader.EXPAND_FRAMES : 0);
+		} finally {
+			if (metrics != null)
+				metrics.exit(previous);
+		}
+		val readMethods = this.readMethods;
+		assert readMethods != null;
+		for (int i = 0; i < readMethods.length; i++) {
+			val target = readMethods[i].node;
+			val source = withCode.methods.get(i);
+			target.instructions = source.instructions;
+			target.tryCatchBlocks = source.tryCatchBlocks;
+			target.localVariables = source.localVariables;
+			target.visibleLocalVariableAnnotations = source.visibleLocalVariableAnnotations;
+			target.invisibleLocalVariableAnnotations = source.invisibleLocalVariableAnnotations;
+			target.maxStack = source.maxStack;
+			target.maxLocals = source.maxLocals;
+		}
+		hasCode = true;
+		return node;
+	}
+
+	/**
+	 * @return the reader for the original class, only valid once the class has been read
+	 */
+	public synchronized ClassReader getReader() {
+		val reader = this.reader;
+		if (reader == null)
+			throw new IllegalStateException("Class has not been read");
+		return reader;
+	}
+
+	public synchronized boolean isRead() {
+		return node != null;
+	}
+
+	public synchronized boolean hasCode() {
+		return hasCode;
+	}
+
+	/**
+	 * @return whether the method was read from the original class, rather than added afterwards
+	 */
+	public synchronized boolean isReadMethod(MethodNode method) {
+		return readMethodsByNode.containsKey(method);
+	}
+
+	/**
+	 * Whether the original bytes of a method can be copied instead of writing its node. The caller must separately
+	 * check that the method's code and attributes weren't changed, only its name and access flags may differ.
+	 *
+	 * @return true if the method was read from the original class and its descriptor, signature and exceptions are unchanged
+	 */
+	public synchronized boolean canCopy(MethodNode method) {
+		val read = readMethodsByNode.get(method);
+		return read != null && read.desc.equals(method.desc) && Objects.equals(read.signature, method.signature) && read.exceptions.equals(method.exceptions);
+	}
+
+	/**
+	 * Starts copying the original bytes of a method into a writer, so the method keeps its position in the class. The
+	 * copy is completed by {@link #copyMethods(Map)}, which must be called before the writer's visitEnd.
+	 *
+	 * @param writer writer created from {@link #getReader()}, so ASM copies the method's attributes instead of visiting
+	 *               its code
+	 * @param method method to copy, which must pass {@link #canCopy(MethodNode)}
+	 * @return the writer's visitor for the method, to pass to {@link #copyMethods(Map)}
+	 */
+	public synchronized MethodVisitor startCopy(ClassWriter writer, MethodNode method) {
+		val read = readMethodsByNode.get(method);
+		if (read == null)
+			throw new IllegalArgumentException("Method " + method.name + method.desc + " was not read from this class");
+		// desc, signature and exceptions must be the reader's own for the copy to happen
+		return writer.visitMethod(method.access, method.name, read.desc, read.signature, read.exceptions.toArray(new String[0]));
+	}
+
+	/**
+	 * Copies the original bytes of methods started with {@link #startCopy(ClassWriter, MethodNode)}
+	 *
+	 * @param visitors visitors returned by {@link #startCopy(ClassWriter, MethodNode)}, by method
+	 */
+	public void copyMethods(Map<MethodNode, MethodVisitor> visitors) {
+		if (visitors.isEmpty())
+			return;
+		val readMethods = this.readMethods;
+		if (readMethods == null)
+			throw new IllegalStateException("Class has not been read");
+		getReader().accept(new ClassVisitor(Opcodes.ASM5) {
+			private int index;
+
+			@Override
+			public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+				return visitors.get(readMethods[index++].node);
+			}
+		}, ClassReader.SKIP_CODE);
+	}
+
+	private static class ReadMethod {
+		final MethodNode node;
+		final String desc;
+		@Nullable
+		final String signature;
+		final List<String> exceptions;
+
+		ReadMethod(MethodNode node) {
+			this.node = node;
+			desc = node.desc;
+			signature = node.signature;
+			exceptions = new ArrayList<>(node.exceptions);
+		}
+	}
+}
@@ -0,0 +1,253 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Immutable, memory compact set of fully qualified class names
+ * <p>
+ * Names are split at their last '.' into a package and a simple name. Each package is stored once, and the simple
+ * names are packed as sorted UTF-8 into a single byte array, so lookups are two binary searches.
+ */
+public final class ClassNameSet {
+	public static final ClassNameSet EMPTY = new ClassNameSet(new String[0], new int[]{0}, new int[]{0}, new byte[0]);
+	private static final Comparator<byte[]> UNSIGNED_ORDER = ClassNameSet::compareUnsigned;
+	/**
+	 * Sorted package names, "" for the default package
+	 */
+	private final String[] packages;
+	/**
+	 * Index of the first name in each package, followed by the total number of names
+	 */
+	private final int[] packageStarts;
+	/**
+	 * Offset of each name in {@link #names}, followed by the length of {@link #names}
+	 */
+	private final int[] nameOffsets;
+	private final byte[] names;
+
+	private ClassNameSet(String[] packages, int[] packageStarts, int[] nameOffsets, byte[] names) {
+		this.packages = packages;
+		this.packageStarts = packageStarts;
+		this.nameOffsets = nameOffsets;
+		this.names = names;
+	}
+
+	public static ClassNameSet of(@NonNull Collection<String> classNames) {
+		if (classNames.isEmpty())
+			return EMPTY;
+
+		val byPackage = new TreeMap<String, List<byte[]>>();
+		for (String className : classNames) {
+			val index = className.lastIndexOf('.');
+			val packageName = index == -1 ? "" : className.substring(0, index);
+			byPackage.computeIfAbsent(packageName, it -> new ArrayList<>()).add(className.substring(index + 1).getBytes(StandardCharsets.UTF_8));
+		}
+
+		val packages = new String[byPackage.size()];
+		val packageStarts = new int[packages.length + 1];
+		val sortedNames = new ArrayList<byte[]>(classNames.size());
+		int totalLength = 0;
+		int packageIndex = 0;
+		for (Map.Entry<String, List<byte[]>> entry : byPackage.entrySet()) {
+			packages[packageIndex] = entry.getKey();
+			packageStarts[packageIndex++] = sortedNames.size();
+			val simpleNames = entry.getValue();
+			simpleNames.sort(UNSIGNED_ORDER);
+			byte[] previous = null;
+			for (byte[] simpleName : simpleNames) {
+				if (previous != null && Arrays.equals(previous, simpleName))
+					continue;
+				sortedNames.add(simpleName);
+				totalLength += simpleName.length;
+				previous = simpleName;
+			}
+		}
+		packageStarts[packageIndex] = sortedNames.size();
+
+		val nameOffsets = new int[sortedNames.size() + 1];
+		val names = new byte[totalLength];
+		int offset = 0;
+		for (int i = 0; i < sortedNames.size(); i++) {
+			val simpleName = sortedNames.get(i);
+			nameOffsets[i] = offset;
+			System.arraycopy(simpleName, 0, names, offset, simpleName.length);
+			offset += simpleName.length;
+		}
+		nameOffsets[sortedNames.size()] = offset;
+
+		return new ClassNameSet(packages, packageStarts, nameOffsets, names);
+	}
+
+	private static int compareUnsigned(byte[] a, byte[] b) {
+		val length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			val difference = (a[i] & 0xFF) - (b[i] & 0xFF);
+			if (difference != 0)
+				return difference;
+		}
+		return a.length - b.length;
+	}
+
+	private static boolean isAscii(String value, int from) {
+		for (int i = from; i < value.length(); i++)
+			if (value.charAt(i) >= 0x80)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return a set containing the names in this set and the given names
+	 */
+	public ClassNameSet with(@NonNull Collection<String> classNames) {
+		if (classNames.isEmpty())
+			return this;
+		val all = new ArrayList<String>(size() + classNames.size());
+		stream().forEach(all::add);
+		all.addAll(classNames);
+		return of(all);
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int size() {
+		return nameOffsets.length - 1;
+	}
+
+	public boolean contains(@NonNull String className) {
+		val index = className.lastIndexOf('.');
+		val packageIndex = findPackage(className, index == -1 ? 0 : index);
+		if (packageIndex < 0)
+			return false;
+
+		int low = packageStarts[packageIndex];
+		int high = packageStarts[packageIndex + 1] - 1;
+		if (isAscii(className, index + 1)) {
+			// UTF-8 for ASCII is the same as the chars, so no need to encode the name
+			while (low <= high) {
+				val mid = (low + high) >>> 1;
+				val comparison = compareName(mid, className, index + 1);
+				if (comparison < 0)
+					low = mid + 1;
+				else if (comparison > 0)
+					high = mid - 1;
+				else
+					return true;
+			}
+			return false;
+		}
+
+		val simpleName = className.substring(index + 1).getBytes(StandardCharsets.UTF_8);
+		while (low <= high) {
+			val mid = (low + high) >>> 1;
+			val comparison = compareName(mid, simpleName);
+			if (comparison < 0)
+				low = mid + 1;
+			else if (comparison > 0)
+				high = mid - 1;
+			else
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param packageName package name in JLS format, eg java.util, or "" for the default package
+	 * @return fully qualified names of the classes directly in the given package, sorted by UTF-8 simple name
+	 */
+	public List<String> getClassesInPackage(@NonNull String packageName) {
+		val packageIndex = findPackage(packageName, packageName.length());
+		if (packageIndex < 0)
+			return Collections.emptyList();
+		return namesInPackage(packageIndex);
+	}
+
+	public Stream<String> stream() {
+		return IntStream.range(0, packages.length).boxed().flatMap(it -> namesInPackage(it).stream());
+	}
+
+	private List<String> namesInPackage(int packageIndex) {
+		val packageName = packages[packageIndex];
+		val prefix = packageName.isEmpty() ? "" : packageName + '.';
+		val start = packageStarts[packageIndex];
+		val end = packageStarts[packageIndex + 1];
+		val result = new ArrayList<String>(end - start);
+		for (int i = start; i < end; i++)
+			result.add(prefix + new String(names, nameOffsets[i], nameOffsets[i + 1] - nameOffsets[i], StandardCharsets.UTF_8));
+		return result;
+	}
+
+	/**
+	 * @return index of the package equal to className.substring(0, length), or a negative value if there isn't one
+	 */
+	private int findPackage(String className, int length) {
+		int low = 0;
+		int high = packages.length - 1;
+		while (low <= high) {
+			val mid = (low + high) >>> 1;
+			val candidate = packages[mid];
+			val comparison = compareRegion(candidate, className, length);
+			if (comparison < 0)
+				low = mid + 1;
+			else if (comparison > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	private static int compareRegion(String candidate, String className, int length) {
+		val common = Math.min(candidate.length(), length);
+		for (int i = 0; i < common; i++) {
+			val difference = candidate.charAt(i) - className.charAt(i);
+			if (difference != 0)
+				return difference;
+		}
+		return candidate.length() - length;
+	}
+
+	private int compareName(int nameIndex, String className, int from) {
+		val start = nameOffsets[nameIndex];
+		val length = nameOffsets[nameIndex + 1] - start;
+		val otherLength = className.length() - from;
+		val common = Math.min(length, otherLength);
+		for (int i = 0; i < common; i++) {
+			val difference = (names[start + i] & 0xFF) - className.charAt(from + i);
+			if (difference != 0)
+				return difference;
+		}
+		return length - otherLength;
+	}
+
+	private int compareName(int nameIndex, byte[] simpleName) {
+		val start = nameOffsets[nameIndex];
+		val length = nameOffsets[nameIndex + 1] - start;
+		val common = Math.min(length, simpleName.length);
+		for (int i = 0; i < common; i++) {
+			val difference = (names[start + i] & 0xFF) - (simpleName[i] & 0xFF);
+			if (difference != 0)
+				return difference;
+		}
+		return length - simpleName.length;
+	}
+
+	@Override
+	public String toString() {
+		return "ClassNameSet: " + size() + " classes in " + packages.length + " packages";
+	}
+}
@@ -0,0 +1,46 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class IOUtil {
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * Reads the rest of a stream into an array
+	 * <p>
+	 * When the size is known, such as from a zip entry header, the data is read straight into a right-sized array and
+	 * not copied.
+	 *
+	 * @param expectedSize size of the remaining data, or -1 if it is unknown
+	 */
+	public static byte[] readFully(InputStream is, long expectedSize) throws IOException {
+		if (expectedSize > MAX_ARRAY_SIZE)
+			throw new IOException("Can't read " + expectedSize + " bytes into an array");
+
+		byte[] output = new byte[expectedSize < 0 ? DEFAULT_BUFFER_SIZE : (int) expectedSize];
+		int position = 0;
+		while (true) {
+			if (position == output.length) {
+				// the array is full, so check for the end of the stream before growing it
+				int next = is.read();
+				if (next == -1)
+					return output;
+				if (output.length == MAX_ARRAY_SIZE)
+					throw new IOException("Stream is too large to read into an array");
+				output = Arrays.copyOf(output, (int) Math.min(MAX_ARRAY_SIZE, Math.max(DEFAULT_BUFFER_SIZE, output.length * 2L)));
+				output[position++] = (byte) next;
+			}
+			int read = is.read(output, position, output.length - position);
+			if (read < 0)
+				break;
+			position += read;
+		}
+		return position == output.length ? output : Arrays.copyOf(output, position);
+	}
+}
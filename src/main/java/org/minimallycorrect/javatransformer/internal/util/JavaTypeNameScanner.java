@@ -0,0 +1,300 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Finds the names of the top level and member types declared in a Java source file without building an AST
+ * <p>
+ * Produces the same names as walking the {@link com.github.javaparser.ast.body.TypeDeclaration}s of a parsed
+ * compilation unit: local and anonymous classes, and classes in enum constant bodies, are not included. Nested type
+ * names are separated by '.', eg org.example.Outer.Inner.
+ * <p>
+ * Returns null for sources it can't be sure about, such as those containing unicode escapes, records or syntax errors.
+ * Callers should fall back to parsing the source in that case.
+ */
+public class JavaTypeNameScanner {
+	private final CharSequence source;
+	private final List<String> names = new ArrayList<>();
+	private int position;
+	@Nullable
+	private String token;
+	@Nullable
+	private String peeked;
+	private int peekedEnd;
+
+	private JavaTypeNameScanner(CharSequence source) {
+		this.source = source;
+	}
+
+	/**
+	 * @return the qualified names of the declared types, or null if the source should be parsed instead
+	 */
+	@Nullable
+	public static List<String> scan(CharSequence source) {
+		for (int i = 0, length = source.length() - 1; i < length; i++)
+			if (source.charAt(i) == '\\' && source.charAt(i + 1) == 'u')
+				return null;
+
+		val scanner = new JavaTypeNameScanner(source);
+		try {
+			scanner.compilationUnit();
+		} catch (AmbiguousSourceException e) {
+			return null;
+		}
+		return scanner.names;
+	}
+
+	private static boolean isTypeKeyword(String token) {
+		return token.equals("class") || token.equals("interface") || token.equals("enum");
+	}
+
+	private static boolean isIdentifier(@Nullable String token) {
+		return token != null && Character.isJavaIdentifierStart(token.charAt(0));
+	}
+
+	private void compilationUnit() {
+		// byte order mark
+		if (position < source.length() && source.charAt(position) == 0xFEFF)
+			position++;
+
+		String prefix = "";
+		String token;
+		while ((token = next()) != null) {
+			switch (token) {
+				case "package":
+					prefix = qualifiedName() + '.';
+					break;
+				case "import":
+					skipStatement();
+					break;
+				case "module":
+				case "open":
+				case "{":
+				case "}":
+					throw new AmbiguousSourceException();
+				default:
+					member(token, prefix);
+			}
+		}
+	}
+
+	/**
+	 * Handles a token at the top level or directly in a type body
+	 */
+	private void member(String token, String prefix) {
+		switch (token) {
+			case "class":
+			case "interface":
+			case "enum":
+				typeDeclaration(prefix);
+				break;
+			case "@":
+				if ("interface".equals(peek())) {
+					next();
+					typeDeclaration(prefix);
+				}
+				break;
+			case ".":
+				// class literals, eg String.class in a field initialiser
+				if ("class".equals(peek()))
+					next();
+				break;
+			case "record":
+				if (isIdentifier(peek()))
+					throw new AmbiguousSourceException();
+				break;
+			case "(":
+				skipBalanced("(", ")");
+				break;
+			case "{":
+				skipBalanced("{", "}");
+				break;
+			case ")":
+			case "}":
+				throw new AmbiguousSourceException();
+		}
+	}
+
+	private void skipStatement() {
+		while (!";".equals(next()))
+			if (token == null)
+				throw new AmbiguousSourceException();
+	}
+
+	private String qualifiedName() {
+		val name = new StringBuilder();
+		while (true) {
+			if (!isIdentifier(next()) || isTypeKeyword(token))
+				throw new AmbiguousSourceException();
+			name.append(token);
+			next();
+			if (";".equals(token))
+				return name.toString();
+			if (!".".equals(token))
+				throw new AmbiguousSourceException();
+			name.append('.');
+		}
+	}
+
+	private void typeDeclaration(String prefix) {
+		if (!isIdentifier(next()) || isTypeKeyword(token))
+			throw new AmbiguousSourceException();
+		val name = prefix + token;
+		names.add(name);
+
+		// skip type parameters, extends and implements clauses, and any annotations in them
+		while (!"{".equals(next())) {
+			if (token == null || token.equals(";") || token.equals("}") || token.equals(")"))
+				throw new AmbiguousSourceException();
+			if (token.equals("("))
+				skipBalanced("(", ")");
+		}
+
+		val memberPrefix = name + '.';
+		while (!"}".equals(next())) {
+			if (token == null)
+				throw new AmbiguousSourceException();
+			member(token, memberPrefix);
+		}
+	}
+
+	private void skipBalanced(String open, String close) {
+		int depth = 1;
+		while (depth > 0) {
+			val token = next();
+			if (token == null)
+				throw new AmbiguousSourceException();
+			if (token.equals(open))
+				depth++;
+			else if (token.equals(close))
+				depth--;
+		}
+	}
+
+	@Nullable
+	private String peek() {
+		if (peeked == null) {
+			val start = position;
+			peeked = read();
+			peekedEnd = position;
+			position = start;
+		}
+		return peeked;
+	}
+
+	@Nullable
+	private String next() {
+		if (peeked != null) {
+			token = peeked;
+			position = peekedEnd;
+			peeked = null;
+			return token;
+		}
+		return token = read();
+	}
+
+	/**
+	 * @return the next identifier, keyword or symbol, skipping whitespace, comments and literals. null at the end of the source
+	 */
+	@Nullable
+	private String read() {
+		val source = this.source;
+		val length = source.length();
+		while (position < length) {
+			val c = source.charAt(position);
+			if (Character.isWhitespace(c)) {
+				position++;
+			} else if (c == '/' && position + 1 < length && source.charAt(position + 1) == '/') {
+				while (position < length && source.charAt(position) != '\n' && source.charAt(position) != '\r')
+					position++;
+			} else if (c == '/' && position + 1 < length && source.charAt(position + 1) == '*') {
+				val end = indexOf("*/", position + 2);
+				position = end + 2;
+			} else if (c == '"') {
+				if (startsWith("\"\"\"", position))
+					position = skipTextBlock(position + 3) + 3;
+				else
+					skipQuoted('"');
+			} else if (c == '\'') {
+				skipQuoted('\'');
+			} else if (Character.isDigit(c)) {
+				while (position < length && (Character.isJavaIdentifierPart(source.charAt(position)) || source.charAt(position) == '.'))
+					position++;
+			} else if (Character.isJavaIdentifierStart(c)) {
+				val start = position++;
+				while (position < length && Character.isJavaIdentifierPart(source.charAt(position)))
+					position++;
+				return source.subSequence(start, position).toString();
+			} else {
+				position++;
+				return String.valueOf(c);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the position of the closing delimiter of the text block starting at the given position
+	 */
+	private int skipTextBlock(int position) {
+		val length = source.length();
+		while (position < length) {
+			val c = source.charAt(position);
+			if (c == '\\')
+				position += 2;
+			else if (startsWith("\"\"\"", position))
+				return position;
+			else
+				position++;
+		}
+		throw new AmbiguousSourceException();
+	}
+
+	private void skipQuoted(char quote) {
+		val length = source.length();
+		position++;
+		while (position < length) {
+			val c = source.charAt(position);
+			if (c == '\\') {
+				position += 2;
+			} else if (c == quote) {
+				position++;
+				return;
+			} else if (c == '\n' || c == '\r') {
+				break;
+			} else {
+				position++;
+			}
+		}
+		throw new AmbiguousSourceException();
+	}
+
+	private boolean startsWith(String value, int position) {
+		if (position + value.length() > source.length())
+			return false;
+		for (int i = 0; i < value.length(); i++)
+			if (source.charAt(position + i) != value.charAt(i))
+				return false;
+		return true;
+	}
+
+	private int indexOf(String value, int from) {
+		for (int i = from, last = source.length() - value.length(); i <= last; i++)
+			if (startsWith(value, i))
+				return i;
+		throw new AmbiguousSourceException();
+	}
+
+	private static class AmbiguousSourceException extends RuntimeException {
+		private static final long serialVersionUID = 0;
+
+		AmbiguousSourceException() {
+			super(null, null, false, false);
+		}
+	}
+}
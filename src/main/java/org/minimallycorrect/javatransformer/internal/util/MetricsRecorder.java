@@ -0,0 +1,119 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import org.jetbrains.annotations.Nullable;
+
+import org.minimallycorrect.javatransformer.api.EntryMetrics;
+import org.minimallycorrect.javatransformer.api.EntryMetrics.Outcome;
+import org.minimallycorrect.javatransformer.api.EntryMetrics.Phase;
+import org.minimallycorrect.javatransformer.api.Transformer;
+
+/**
+ * Records {@link EntryMetrics} for the entry being transformed on the current thread
+ * <p>
+ * Code which starts a phase checks {@link #current()}, which is null unless a
+ * {@link org.minimallycorrect.javatransformer.api.MetricsListener} is set, so recording costs one thread local lookup
+ * when disabled:
+ *
+ * <pre>
+ * val metrics = MetricsRecorder.current();
+ * val previous = metrics == null ? null : metrics.enter(Phase.PARSE);
+ * try {
+ *     ...
+ * } finally {
+ *     if (metrics != null)
+ *         metrics.exit(previous);
+ * }
+ * </pre>
+ */
+public final class MetricsRecorder {
+	private static final ThreadLocal<MetricsRecorder> current = new ThreadLocal<>();
+	private final String relativeName;
+	private final long[] phaseNanos = new long[Phase.values().length];
+	private final Map<Transformer, Long> transformerNanos = new LinkedHashMap<>();
+	@Nullable
+	private Phase phase;
+	private long phaseStart;
+	private boolean parsed;
+	@Getter
+	@Setter
+	@Nullable
+	private Outcome outcome;
+	@Setter
+	private long bytesIn;
+	@Setter
+	private long bytesOut;
+
+	public MetricsRecorder(String relativeName) {
+		this.relativeName = relativeName;
+	}
+
+	@Nullable
+	public static MetricsRecorder current() {
+		return current.get();
+	}
+
+	/**
+	 * Records metrics from the current thread into this recorder until {@link #detach()}
+	 */
+	public void attach() {
+		current.set(this);
+	}
+
+	public void detach() {
+		current.remove();
+	}
+
+	/**
+	 * Starts a phase, pausing the current one
+	 *
+	 * @return the phase which was running, to pass to {@link #exit(Phase)}
+	 */
+	@Nullable
+	public Phase enter(Phase phase) {
+		long now = System.nanoTime();
+		Phase previous = this.phase;
+		if (previous != null)
+			phaseNanos[previous.ordinal()] += now - phaseStart;
+		if (phase == Phase.PARSE)
+			parsed = true;
+		this.phase = phase;
+		phaseStart = now;
+		return previous;
+	}
+
+	/**
+	 * Ends the current phase, resuming the given one
+	 */
+	public void exit(@Nullable Phase previous) {
+		long now = System.nanoTime();
+		Phase phase = this.phase;
+		if (phase != null)
+			phaseNanos[phase.ordinal()] += now - phaseStart;
+		this.phase = previous;
+		phaseStart = now;
+	}
+
+	/**
+	 * Adds time spent outside of the thread the entry was transformed on
+	 */
+	public void addNanos(Phase phase, long nanos) {
+		phaseNanos[phase.ordinal()] += nanos;
+	}
+
+	public void addTransformerNanos(Transformer transformer, long nanos) {
+		transformerNanos.merge(transformer, nanos, Long::sum);
+	}
+
+	public EntryMetrics toEntryMetrics() {
+		Outcome outcome = this.outcome;
+		if (outcome == null)
+			throw new IllegalStateException("Outcome of " + relativeName + " was not recorded");
+		return new EntryMetrics(relativeName, outcome, parsed, bytesIn, bytesOut, phaseNanos.clone(), new LinkedHashMap<>(transformerNanos));
+	}
+}
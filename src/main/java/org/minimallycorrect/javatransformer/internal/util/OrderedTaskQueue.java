@@ -0,0 +1,104 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import lombok.NonNull;
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+import org.minimallycorrect.javatransformer.api.TransformationException;
+
+/**
+ * Runs named tasks, passing their results to a consumer on the submitting thread in the order the tasks were submitted
+ * <p>
+ * With a parallelism of 1 or less tasks run immediately on the submitting thread. Otherwise tasks run on a
+ * {@link ForkJoinPool} and at most a few results per thread are kept waiting for the consumer at once.
+ *
+ * @param <T> result type
+ */
+public class OrderedTaskQueue<T> implements AutoCloseable {
+	private static final int PENDING_PER_THREAD = 4;
+	@Nullable
+	private final ExecutorService executor;
+	private final int maxPending;
+	private final BiConsumer<String, T> consumer;
+	private final ArrayDeque<Pending<T>> pending = new ArrayDeque<>();
+
+	public OrderedTaskQueue(int parallelism, @NonNull BiConsumer<String, T> consumer) {
+		this.consumer = consumer;
+		if (parallelism > 1) {
+			executor = new ForkJoinPool(parallelism);
+			maxPending = parallelism * PENDING_PER_THREAD;
+		} else {
+			executor = null;
+			maxPending = 0;
+		}
+	}
+
+	private static <T> T await(Future<T> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new TransformationException(e);
+		} catch (ExecutionException e) {
+			val cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new TransformationException(cause);
+		}
+	}
+
+	/**
+	 * @return true if tasks may run on a different thread to the one submitting them
+	 */
+	public boolean isParallel() {
+		return executor != null;
+	}
+
+	public void submit(@NonNull String name, @NonNull Supplier<T> task) {
+		if (executor == null) {
+			consumer.accept(name, task.get());
+			return;
+		}
+
+		pending.add(new Pending<>(name, executor.submit(task::get)));
+		while (pending.size() > maxPending)
+			consumeNext();
+	}
+
+	private void consumeNext() {
+		val next = pending.poll();
+		consumer.accept(next.name, await(next.future));
+	}
+
+	@Override
+	public void close() {
+		try {
+			while (!pending.isEmpty())
+				consumeNext();
+		} finally {
+			if (executor != null)
+				executor.shutdownNow();
+		}
+	}
+
+	private static class Pending<T> {
+		final String name;
+		final Future<T> future;
+
+		Pending(String name, Future<T> future) {
+			this.name = name;
+			this.future = future;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import lombok.experimental.UtilityClass;
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Walks a directory tree on the common {@link ForkJoinPool}, listing subdirectories and visiting files concurrently
+ * <p>
+ * Like {@link Files#walkFileTree(Path, java.nio.file.FileVisitor)}, symbolic links are visited as files and not followed.
+ */
+@UtilityClass
+public class ParallelFileWalker {
+	/**
+	 * @param root    directory to walk
+	 * @param visitor called for every file, from any thread. null results are left out.
+	 * @return the visitor's results, in no particular order
+	 */
+	public static <T> List<T> walk(Path root, Visitor<T> visitor) {
+		return new DirectoryTask<>(root, visitor).invoke();
+	}
+
+	@FunctionalInterface
+	public interface Visitor<T> {
+		@Nullable
+		T visit(Path file, BasicFileAttributes attributes) throws IOException;
+	}
+
+	private static class DirectoryTask<T> extends RecursiveTask<List<T>> {
+		private static final long serialVersionUID = 0;
+		private final Path directory;
+		private final Visitor<T> visitor;
+
+		DirectoryTask(Path directory, Visitor<T> visitor) {
+			this.directory = directory;
+			this.visitor = visitor;
+		}
+
+		@Override
+		protected List<T> compute() {
+			val directories = new ArrayList<ForkJoinTask<List<T>>>();
+			val files = new ArrayList<ForkJoinTask<T>>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+				for (Path child : stream) {
+					val attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					if (attributes.isDirectory())
+						directories.add(new DirectoryTask<>(child, visitor).fork());
+					else
+						files.add(new FileTask<>(child, attributes, visitor).fork());
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			val results = new ArrayList<T>();
+			for (val file : files) {
+				val result = file.join();
+				if (result != null)
+					results.add(result);
+			}
+			for (val subdirectory : directories)
+				results.addAll(subdirectory.join());
+			return results;
+		}
+	}
+
+	private static class FileTask<T> extends RecursiveTask<T> {
+		private static final long serialVersionUID = 0;
+		private final Path file;
+		private final BasicFileAttributes attributes;
+		private final Visitor<T> visitor;
+
+		FileTask(Path file, BasicFileAttributes attributes, Visitor<T> visitor) {
+			this.file = file;
+			this.attributes = attributes;
+			this.visitor = visitor;
+		}
+
+		@Override
+		protected T compute() {
+			try {
+				return visitor.visit(file, attributes);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,305 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import lombok.NonNull;
+import lombok.val;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Finds the values registered for a fully qualified class name by exact name, package, glob pattern or annotation
+ * <p>
+ * Names are indexed in a trie of package segments, so finding whether any value targets a class only walks the
+ * segments of its name, checking the patterns registered under each package it passes through. Values are returned in
+ * the order they were added.
+ * <p>
+ * In patterns {@code *} and {@code ?} match any characters or one character within a segment, and {@code **} matches
+ * any characters including '.'. {@code **.} at the start of a segment matches zero or more whole segments. Package
+ * targets match all classes in the package and its subpackages.
+ *
+ * @param <T> value type
+ */
+public final class TargetIndex<T> {
+	private final Node<T> root = new Node<>();
+	private final Map<String, List<Target<T>>> annotations = new LinkedHashMap<>();
+	private int added;
+
+	static Pattern compileGlob(String glob) {
+		val regex = new StringBuilder();
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c == '*') {
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+					boolean segmentStart = i == 0 || glob.charAt(i - 1) == '.';
+					i++;
+					if (i + 1 < glob.length() && glob.charAt(i + 1) == '.') {
+						// "**." starting a segment also matches no packages: a.**.B matches a.B, a**.B needs the dot
+						regex.append(segmentStart ? "(?:.*\\.)?" : ".*\\.");
+						i++;
+					} else {
+						regex.append(".*");
+					}
+				} else {
+					regex.append("[^.]*");
+				}
+			} else if (c == '?') {
+				regex.append("[^.]");
+			} else {
+				if (!Character.isLetterOrDigit(c))
+					regex.append('\\');
+				regex.append(c);
+			}
+		}
+		return Pattern.compile(regex.toString());
+	}
+
+	private static boolean isGlob(String name) {
+		return name.indexOf('*') != -1 || name.indexOf('?') != -1;
+	}
+
+	public void addClass(@NonNull String className, @NonNull T value) {
+		getNode(className, true).classes.add(new Target<>(added++, value, null));
+	}
+
+	/**
+	 * @param packageName package whose classes and subpackages to target, or "" for all classes
+	 */
+	public void addPackage(@NonNull String packageName, @NonNull T value) {
+		getNode(packageName, true).packages.add(new Target<>(added++, value, null));
+	}
+
+	public void addPattern(@NonNull String pattern, @NonNull T value) {
+		if (!isGlob(pattern)) {
+			addClass(pattern, value);
+			return;
+		}
+		// indexed under the literal segments before the first wildcard, excluding the simple name
+		int prefixEnd = 0;
+		int next;
+		while ((next = pattern.indexOf('.', prefixEnd)) != -1 && !isGlob(pattern.substring(prefixEnd, next)))
+			prefixEnd = next + 1;
+		val node = getNode(prefixEnd == 0 ? "" : pattern.substring(0, prefixEnd - 1), true);
+		node.patterns.add(new Target<>(added++, value, compileGlob(pattern)));
+	}
+
+	/**
+	 * @param annotation fully qualified name of an annotation on the classes to target
+	 */
+	public void addAnnotation(@NonNull String annotation, @NonNull T value) {
+		annotations.computeIfAbsent(annotation, it -> new ArrayList<>()).add(new Target<>(added++, value, null));
+	}
+
+	public boolean isEmpty() {
+		return added == 0;
+	}
+
+	public boolean hasAnnotationTargets() {
+		return !annotations.isEmpty();
+	}
+
+	public boolean containsClass(String className, T value) {
+		val node = getNode(className, false);
+		if (node == null)
+			return false;
+		for (Target<T> target : node.classes)
+			if (target.value.equals(value))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return fully qualified names of the targeted annotations
+	 */
+	public Set<String> getAnnotations() {
+		return Collections.unmodifiableSet(annotations.keySet());
+	}
+
+	/**
+	 * @return true if any value targets the class by name, or could target it by annotation
+	 */
+	public boolean matches(String className) {
+		return !annotations.isEmpty() || matchesName(className);
+	}
+
+	/**
+	 * @return true if any value targets the class by name
+	 */
+	public boolean matchesName(String className) {
+		Node<T> node = root;
+		int start = 0;
+		while (true) {
+			if (!node.packages.isEmpty())
+				return true;
+			for (Target<T> target : node.patterns)
+				if (target.matches(className))
+					return true;
+			int end = className.indexOf('.', start);
+			node = node.getChild(end == -1 ? className.substring(start) : className.substring(start, end));
+			if (node == null)
+				return false;
+			if (end == -1)
+				return !node.classes.isEmpty();
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * @param annotations fully qualified names of the class's annotations
+	 * @return values targeting the class, in the order they were added
+	 */
+	public List<T> get(String className, Collection<String> annotations) {
+		val found = new ArrayList<Target<T>>();
+		collect(className, found);
+		if (!this.annotations.isEmpty())
+			for (String annotation : annotations) {
+				val targets = this.annotations.get(annotation);
+				if (targets != null)
+					found.addAll(targets);
+			}
+		return toValues(found);
+	}
+
+	public List<T> get(String className) {
+		return get(className, Collections.emptyList());
+	}
+
+	/**
+	 * @return values targeting the class by name, and all values targeting annotations
+	 */
+	public List<T> getCandidates(String className) {
+		val found = new ArrayList<Target<T>>();
+		collect(className, found);
+		for (List<Target<T>> targets : annotations.values())
+			found.addAll(targets);
+		return toValues(found);
+	}
+
+	/**
+	 * @return values targeting exact class names
+	 */
+	public Map<String, List<T>> getClasses() {
+		val classes = new TreeMap<String, List<T>>();
+		collectClasses(root, null, classes);
+		return classes;
+	}
+
+	private void collectClasses(Node<T> node, @Nullable String name, Map<String, List<T>> classes) {
+		if (name != null && !node.classes.isEmpty()) {
+			val values = new ArrayList<T>(node.classes.size());
+			for (Target<T> target : node.classes)
+				values.add(target.value);
+			classes.put(name, values);
+		}
+		for (val entry : node.children.entrySet())
+			collectClasses(entry.getValue(), name == null ? entry.getKey() : name + '.' + entry.getKey(), classes);
+	}
+
+	private void collect(String className, List<Target<T>> found) {
+		Node<T> node = root;
+		int start = 0;
+		while (true) {
+			found.addAll(node.packages);
+			for (Target<T> target : node.patterns)
+				if (target.matches(className))
+					found.add(target);
+			int end = className.indexOf('.', start);
+			node = node.getChild(end == -1 ? className.substring(start) : className.substring(start, end));
+			if (node == null)
+				return;
+			if (end == -1) {
+				found.addAll(node.classes);
+				return;
+			}
+			start = end + 1;
+		}
+	}
+
+	private List<T> toValues(List<Target<T>> found) {
+		if (found.isEmpty())
+			return Collections.emptyList();
+		found.sort(null);
+		val values = new ArrayList<T>(found.size());
+		val seen = Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+		for (Target<T> target : found)
+			if (seen.add(target.value))
+				values.add(target.value);
+		return values;
+	}
+
+	@Contract("_, true -> !null")
+	@Nullable
+	private Node<T> getNode(String name, boolean create) {
+		Node<T> node = root;
+		if (name.isEmpty())
+			return node;
+		int start = 0;
+		while (true) {
+			int end = name.indexOf('.', start);
+			val segment = end == -1 ? name.substring(start) : name.substring(start, end);
+			Node<T> child = node.getChild(segment);
+			if (child == null) {
+				if (!create)
+					return null;
+				child = new Node<>();
+				if (node.children.isEmpty())
+					node.children = new HashMap<>();
+				node.children.put(segment, child);
+			}
+			node = child;
+			if (end == -1)
+				return node;
+			start = end + 1;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TargetIndex(classes=" + getClasses() + ", annotations=" + annotations.keySet() + ')';
+	}
+
+	private static class Node<T> {
+		final List<Target<T>> classes = new ArrayList<>(1);
+		final List<Target<T>> packages = new ArrayList<>(0);
+		final List<Target<T>> patterns = new ArrayList<>(0);
+		Map<String, Node<T>> children = Collections.emptyMap();
+
+		@Nullable
+		Node<T> getChild(String segment) {
+			return children.get(segment);
+		}
+	}
+
+	private static class Target<T> implements Comparable<Target<T>> {
+		final int order;
+		final T value;
+		@Nullable
+		final Pattern pattern;
+
+		Target(int order, T value, @Nullable Pattern pattern) {
+			this.order = order;
+			this.value = value;
+			this.pattern = pattern;
+		}
+
+		boolean matches(String className) {
+			return pattern == null || pattern.matcher(className).matches();
+		}
+
+		@Override
+		public int compareTo(Target<T> other) {
+			return Integer.compare(order, other.order);
+		}
+	}
+}
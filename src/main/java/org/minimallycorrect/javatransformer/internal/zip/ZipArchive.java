@@ -0,0 +1,424 @@
+package org.minimallycorrect.javatransformer.internal.zip;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import lombok.Getter;
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Random access reader for zip/jar files which reads the central directory instead of scanning through every entry
+ * <p>
+ * The archive is memory mapped when it is small enough, and entries can be looked up by name with {@link #getEntry(String)}.
+ * <p>
+ * Entry contents are only read and inflated when requested, and {@link ZipWriter#copy(Entry)} can copy an entry's
+ * compressed data to a new archive without inflating it.
+ * <p>
+ * Throws {@link ZipException} when opening archives which can't be read this way, such as multi-disk archives or
+ * archives with data prepended to them. Callers should fall back to {@link java.util.zip.ZipInputStream} in that case.
+ */
+public class ZipArchive implements Closeable {
+	static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	static final int END_SIGNATURE = 0x06054b50;
+	static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	static final int LOCAL_HEADER_SIZE = 30;
+	static final int CENTRAL_HEADER_SIZE = 46;
+	static final int END_SIZE = 22;
+	static final int ZIP64_END_SIZE = 56;
+	static final int ZIP64_LOCATOR_SIZE = 20;
+	static final int ZIP64_EXTRA_ID = 0x0001;
+	static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+	static final int FLAG_UTF8 = 0x0800;
+	static final long MAX_32 = 0xFFFFFFFFL;
+	static final int MAX_16 = 0xFFFF;
+	private static final int MAX_ENTRY_SIZE = Integer.MAX_VALUE - 8;
+	/**
+	 * Compressed input buffers up to this size are kept for reuse by the reading thread
+	 */
+	private static final int MAX_POOLED_INPUT_SIZE = 1024 * 1024;
+	/**
+	 * Inflaters beyond this number are ended as soon as they are released instead of being kept for reuse
+	 */
+	private static final int MAX_POOLED_INFLATERS = Runtime.getRuntime().availableProcessors();
+
+	@Getter
+	private final Path path;
+	private final FileChannel channel;
+	@Nullable
+	private final MappedByteBuffer mapped;
+	@Getter
+	private final List<Entry> entries;
+	private final Map<String, Entry> entriesByName;
+	/**
+	 * Inflaters not currently in use, ended when this archive is closed so their native memory doesn't wait for
+	 * finalization
+	 */
+	private final ArrayDeque<InflaterState> inflaters = new ArrayDeque<>();
+	private boolean closed;
+
+	private ZipArchive(Path path, FileChannel channel) throws IOException {
+		this.path = path;
+		this.channel = channel;
+		val size = channel.size();
+		this.mapped = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+		val entries = readCentralDirectory();
+		this.entries = Collections.unmodifiableList(entries);
+		this.entriesByName = new HashMap<>(entries.size() * 2);
+		for (val entry : entries)
+			entriesByName.putIfAbsent(entry.getName(), entry);
+	}
+
+	public static ZipArchive open(Path path) throws IOException {
+		val channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			return new ZipArchive(path, channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	static int u16(ByteBuffer buffer, int position) {
+		return buffer.getShort(position) & MAX_16;
+	}
+
+	static long u32(ByteBuffer buffer, int position) {
+		return buffer.getInt(position) & MAX_32;
+	}
+
+	private static int checkedSize(long size, String name) throws ZipException {
+		if (size < 0 || size > MAX_ENTRY_SIZE)
+			throw new ZipException("Entry " + name + " is too large to read, size: " + size);
+		return (int) size;
+	}
+
+	private List<Entry> readCentralDirectory() throws IOException {
+		val fileSize = channel.size();
+		val tailSize = (int) Math.min(fileSize, END_SIZE + MAX_16);
+		val tail = read(fileSize - tailSize, tailSize);
+
+		int end = -1;
+		for (int i = tailSize - END_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == END_SIGNATURE && i + END_SIZE + u16(tail, i + 20) <= tailSize) {
+				end = i;
+				break;
+			}
+		}
+		if (end == -1)
+			throw new ZipException("No end of central directory record in " + path);
+
+		if (u16(tail, end + 4) != 0 || u16(tail, end + 6) != 0)
+			throw new ZipException("Multi-disk archives are not supported: " + path);
+
+		long count = u16(tail, end + 10);
+		long directorySize = u32(tail, end + 12);
+		long directoryOffset = u32(tail, end + 16);
+
+		if (count == MAX_16 || directorySize == MAX_32 || directoryOffset == MAX_32) {
+			val locator = end - ZIP64_LOCATOR_SIZE;
+			if (locator < 0 || tail.getInt(locator) != ZIP64_LOCATOR_SIGNATURE)
+				throw new ZipException("Missing zip64 end of central directory locator in " + path);
+			val zip64End = read(tail.getLong(locator + 8), ZIP64_END_SIZE);
+			if (zip64End.getInt(0) != ZIP64_END_SIGNATURE)
+				throw new ZipException("Invalid zip64 end of central directory record in " + path);
+			count = zip64End.getLong(32);
+			directorySize = zip64End.getLong(40);
+			directoryOffset = zip64End.getLong(48);
+		}
+
+		if (directorySize > MAX_ENTRY_SIZE || directoryOffset + directorySize > fileSize)
+			throw new ZipException("Invalid central directory in " + path);
+
+		val directory = read(directoryOffset, (int) directorySize);
+		val entries = new ArrayList<Entry>((int) Math.min(count, MAX_16));
+		int position = 0;
+		while (position < directorySize) {
+			val entry = new Entry(directory, position);
+			entries.add(entry);
+			position += CENTRAL_HEADER_SIZE + entry.rawName.length + entry.extra.length + u16(directory, position + 32);
+		}
+		if (entries.size() != count)
+			throw new ZipException("Expected " + count + " entries in central directory of " + path + ", found " + entries.size());
+
+		return entries;
+	}
+
+	/**
+	 * @param name entry name, eg org/example/Example.class
+	 * @return the first entry with the given name, or null if there is no such entry
+	 */
+	@Nullable
+	public Entry getEntry(String name) {
+		return entriesByName.get(name);
+	}
+
+	/**
+	 * @return a little endian buffer containing the requested range. Shares the mapped file's contents if it is mapped.
+	 */
+	ByteBuffer read(long position, int length) throws IOException {
+		val mapped = this.mapped;
+		if (mapped != null) {
+			if (position < 0 || position + length > mapped.capacity())
+				throw new EOFException("Unexpected end of " + path);
+			val duplicate = mapped.duplicate();
+			duplicate.position((int) position).limit((int) position + length);
+			return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+		}
+
+		val buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException("Unexpected end of " + path);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private InflaterState acquireInflater() {
+		synchronized (inflaters) {
+			val state = inflaters.poll();
+			if (state != null)
+				return state;
+		}
+		return new InflaterState();
+	}
+
+	private void releaseInflater(InflaterState state) {
+		state.inflater.reset();
+		synchronized (inflaters) {
+			if (!closed && inflaters.size() < MAX_POOLED_INFLATERS) {
+				inflaters.push(state);
+				return;
+			}
+		}
+		state.inflater.end();
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (inflaters) {
+			closed = true;
+			for (InflaterState state : inflaters)
+				state.inflater.end();
+			inflaters.clear();
+		}
+		channel.close();
+	}
+
+	@Override
+	public String toString() {
+		return "ZipArchive: " + path;
+	}
+
+	/**
+	 * An entry in a {@link ZipArchive}. {@link #get()} reads and inflates the entry's contents.
+	 */
+	public final class Entry implements Supplier<byte[]> {
+		@Getter
+		private final String name;
+		@Getter
+		private final int method;
+		@Getter
+		private final long crc;
+		@Getter
+		private final long compressedSize;
+		@Getter
+		private final long size;
+		final int versionMadeBy;
+		final int versionNeeded;
+		final int flags;
+		final int dosTime;
+		final int externalAttributes;
+		final long localHeaderOffset;
+		final byte[] rawName;
+		final byte[] extra;
+		private volatile long dataOffset = -1;
+
+		private Entry(ByteBuffer directory, int position) throws ZipException {
+			if (directory.getInt(position) != CENTRAL_HEADER_SIGNATURE)
+				throw new ZipException("Invalid central directory header at offset " + position + " in " + path);
+			versionMadeBy = u16(directory, position + 4);
+			versionNeeded = u16(directory, position + 6);
+			flags = u16(directory, position + 8);
+			method = u16(directory, position + 10);
+			dosTime = directory.getInt(position + 12);
+			crc = u32(directory, position + 16);
+			long compressedSize = u32(directory, position + 20);
+			long size = u32(directory, position + 24);
+			rawName = new byte[u16(directory, position + 28)];
+			extra = new byte[u16(directory, position + 30)];
+			externalAttributes = directory.getInt(position + 38);
+			long localHeaderOffset = u32(directory, position + 42);
+
+			val duplicate = directory.duplicate();
+			duplicate.position(position + CENTRAL_HEADER_SIZE);
+			duplicate.get(rawName);
+			duplicate.get(extra);
+			name = new String(rawName, StandardCharsets.UTF_8);
+
+			if (size == MAX_32 || compressedSize == MAX_32 || localHeaderOffset == MAX_32) {
+				val extraBuffer = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+				int extraPosition = 0;
+				while (extraPosition + 4 <= extra.length) {
+					val id = u16(extraBuffer, extraPosition);
+					val length = u16(extraBuffer, extraPosition + 2);
+					if (id == ZIP64_EXTRA_ID) {
+						int field = extraPosition + 4;
+						if (size == MAX_32) {
+							size = extraBuffer.getLong(field);
+							field += 8;
+						}
+						if (compressedSize == MAX_32) {
+							compressedSize = extraBuffer.getLong(field);
+							field += 8;
+						}
+						if (localHeaderOffset == MAX_32)
+							localHeaderOffset = extraBuffer.getLong(field);
+						break;
+					}
+					extraPosition += 4 + length;
+				}
+			}
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+
+		public ZipArchive getArchive() {
+			return ZipArchive.this;
+		}
+
+		@Override
+		public byte[] get() {
+			try {
+				return read();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		public byte[] read() throws IOException {
+			val size = checkedSize(this.size, name);
+			val compressed = readCompressed();
+			byte[] result;
+			switch (method) {
+				case ZipEntry.STORED:
+					if (compressedSize != size)
+						throw new ZipException("Stored entry " + name + " has mismatched sizes in " + path);
+					result = new byte[size];
+					compressed.get(result);
+					break;
+				case ZipEntry.DEFLATED:
+					result = inflate(compressed, size);
+					break;
+				default:
+					throw new ZipException("Unsupported compression method " + method + " for entry " + name + " in " + path);
+			}
+
+			val crc32 = new CRC32();
+			crc32.update(result, 0, result.length);
+			if (crc32.getValue() != crc)
+				throw new ZipException("CRC mismatch for entry " + name + " in " + path);
+
+			return result;
+		}
+
+		private byte[] inflate(ByteBuffer compressed, int size) throws ZipException {
+			val state = acquireInflater();
+			// nowrap inflaters may need an extra dummy byte after the end of the input
+			val inputLength = compressed.remaining() + 1;
+			val input = state.input(inputLength);
+			compressed.get(input, 0, inputLength - 1);
+			input[inputLength - 1] = 0;
+
+			val result = new byte[size];
+			val inflater = state.inflater;
+			try {
+				inflater.setInput(input, 0, inputLength);
+				int read = 0;
+				while (read < size) {
+					val inflated = inflater.inflate(result, read, size - read);
+					if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+						break;
+					read += inflated;
+				}
+				if (read != size)
+					throw new ZipException("Entry " + name + " in " + path + " inflated to " + read + " bytes, expected " + size);
+			} catch (DataFormatException e) {
+				throw new ZipException("Invalid compressed data for entry " + name + " in " + path + ": " + e.getMessage());
+			} finally {
+				releaseInflater(state);
+			}
+			return result;
+		}
+
+		/**
+		 * @return the compressed data of this entry, without a data descriptor
+		 */
+		ByteBuffer readCompressed() throws IOException {
+			return ZipArchive.this.read(getDataOffset(), checkedSize(compressedSize, name));
+		}
+
+		private long getDataOffset() throws IOException {
+			long dataOffset = this.dataOffset;
+			if (dataOffset == -1) {
+				val header = ZipArchive.this.read(localHeaderOffset, LOCAL_HEADER_SIZE);
+				if (header.getInt(0) != LOCAL_HEADER_SIGNATURE)
+					throw new ZipException("Invalid local header for entry " + name + " in " + path);
+				this.dataOffset = dataOffset = localHeaderOffset + LOCAL_HEADER_SIZE + u16(header, 26) + u16(header, 28);
+			}
+			return dataOffset;
+		}
+
+		@Override
+		public String toString() {
+			return name + " in " + path;
+		}
+	}
+
+	/**
+	 * Pooled {@link Inflater} and compressed input buffer, so reading an entry only allocates its result
+	 */
+	private static class InflaterState {
+		final Inflater inflater = new Inflater(true);
+		byte[] input = new byte[8192];
+
+		byte[] input(int length) {
+			if (length <= input.length)
+				return input;
+			val input = new byte[Math.max(length, this.input.length * 2)];
+			if (input.length <= MAX_POOLED_INPUT_SIZE)
+				this.input = input;
+			return input;
+		}
+	}
+}
@@ -0,0 +1,307 @@
+package org.minimallycorrect.javatransformer.internal.zip;
+
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.CENTRAL_HEADER_SIGNATURE;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.CENTRAL_HEADER_SIZE;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.END_SIGNATURE;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.END_SIZE;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.FLAG_DATA_DESCRIPTOR;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.FLAG_UTF8;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.LOCAL_HEADER_SIGNATURE;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.LOCAL_HEADER_SIZE;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.MAX_16;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.MAX_32;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.ZIP64_END_SIGNATURE;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.ZIP64_END_SIZE;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.ZIP64_EXTRA_ID;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.ZIP64_LOCATOR_SIGNATURE;
+import static org.minimallycorrect.javatransformer.internal.zip.ZipArchive.ZIP64_LOCATOR_SIZE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Writes zip/jar files, either from uncompressed bytes or by copying the compressed data of a {@link ZipArchive.Entry}
+ * without inflating and deflating it again
+ */
+public class ZipWriter implements Closeable {
+	private static final int VERSION_DEFAULT = 20;
+	private static final int VERSION_ZIP64 = 45;
+	private final OutputStream out;
+	private final List<CentralRecord> records = new ArrayList<>();
+	private final HashSet<String> names = new HashSet<>();
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+	private final CRC32 crc32 = new CRC32();
+	private long position;
+	private boolean closed;
+
+	/**
+	 * @param out stream to write to. Should be buffered, as headers are written in several small writes.
+	 */
+	public ZipWriter(@NonNull OutputStream out) {
+		this.out = out;
+	}
+
+	static int javaToDosTime(long time) {
+		val date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+		val year = date.getYear() - 1980;
+		if (year < 0)
+			return (1 << 21) | (1 << 16);
+		return year << 25 | date.getMonthValue() << 21 | date.getDayOfMonth() << 16 | date.getHour() << 11 | date.getMinute() << 5 | date.getSecond() >> 1;
+	}
+
+	private static boolean isAscii(byte[] bytes) {
+		for (byte b : bytes)
+			if (b < 0)
+				return false;
+		return true;
+	}
+
+	private static ByteBuffer buffer(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	/**
+	 * Removes zip64 fields from extra data copied from another archive, as they are rewritten when needed
+	 */
+	private static byte[] withoutZip64Extra(byte[] extra) {
+		if (extra.length == 0)
+			return extra;
+		val input = ByteBuffer.wrap(extra).order(ByteOrder.LITTLE_ENDIAN);
+		val output = buffer(extra.length);
+		int position = 0;
+		while (position + 4 <= extra.length) {
+			val length = ZipArchive.u16(input, position + 2);
+			val end = Math.min(extra.length, position + 4 + length);
+			if (ZipArchive.u16(input, position) != ZIP64_EXTRA_ID)
+				output.put(extra, position, end - position);
+			position = end;
+		}
+		return Arrays.copyOf(output.array(), output.position());
+	}
+
+	public void write(@NonNull String name, @NonNull byte[] bytes) throws IOException {
+		write(name, bytes, javaToDosTime(System.currentTimeMillis()));
+	}
+
+	public void write(@NonNull String name, @NonNull byte[] bytes, int dosTime) throws IOException {
+		crc32.reset();
+		crc32.update(bytes, 0, bytes.length);
+
+		int method = ZipEntry.STORED;
+		byte[] data = bytes;
+		int dataLength = bytes.length;
+		if (bytes.length != 0) {
+			method = ZipEntry.DEFLATED;
+			deflater.reset();
+			deflater.setInput(bytes);
+			deflater.finish();
+			data = new byte[bytes.length / 2 + 64];
+			dataLength = 0;
+			while (!deflater.finished()) {
+				if (dataLength == data.length)
+					data = Arrays.copyOf(data, data.length * 2);
+				dataLength += deflater.deflate(data, dataLength, data.length - dataLength);
+			}
+		}
+
+		val rawName = name.getBytes(StandardCharsets.UTF_8);
+		val record = new CentralRecord(rawName, VERSION_DEFAULT, VERSION_DEFAULT, isAscii(rawName) ? 0 : FLAG_UTF8, method, dosTime, crc32.getValue(), dataLength, bytes.length, 0, new byte[0]);
+		writeLocalHeader(name, record);
+		out.write(data, 0, dataLength);
+		position += dataLength;
+	}
+
+	/**
+	 * Copies an entry from another archive without inflating it
+	 */
+	public void copy(@NonNull ZipArchive.Entry entry) throws IOException {
+		val data = entry.readCompressed();
+		val record = new CentralRecord(entry.rawName, entry.versionMadeBy, entry.versionNeeded, entry.flags & ~FLAG_DATA_DESCRIPTOR, entry.getMethod(), entry.dosTime, entry.getCrc(), entry.getCompressedSize(), entry.getSize(), entry.externalAttributes, withoutZip64Extra(entry.extra));
+		writeLocalHeader(entry.getName(), record);
+		val length = data.remaining();
+		if (data.hasArray()) {
+			out.write(data.array(), data.arrayOffset() + data.position(), length);
+		} else {
+			val chunk = new byte[Math.min(length, 64 * 1024)];
+			while (data.hasRemaining()) {
+				val count = Math.min(chunk.length, data.remaining());
+				data.get(chunk, 0, count);
+				out.write(chunk, 0, count);
+			}
+		}
+		position += length;
+	}
+
+	private void writeLocalHeader(String name, CentralRecord record) throws IOException {
+		if (closed)
+			throw new IOException("ZipWriter is closed");
+		if (!names.add(name))
+			throw new ZipException("duplicate entry: " + name);
+
+		record.localHeaderOffset = position;
+		records.add(record);
+
+		val zip64 = record.compressedSize >= MAX_32 || record.size >= MAX_32;
+		val extraLength = record.extra.length + (zip64 ? 20 : 0);
+		val header = buffer(LOCAL_HEADER_SIZE + record.rawName.length + extraLength);
+		header.putInt(LOCAL_HEADER_SIGNATURE);
+		header.putShort((short) (zip64 ? Math.max(VERSION_ZIP64, record.versionNeeded) : record.versionNeeded));
+		header.putShort((short) record.flags);
+		header.putShort((short) record.method);
+		header.putInt(record.dosTime);
+		header.putInt((int) record.crc);
+		header.putInt((int) (zip64 ? MAX_32 : record.compressedSize));
+		header.putInt((int) (zip64 ? MAX_32 : record.size));
+		header.putShort((short) record.rawName.length);
+		header.putShort((short) extraLength);
+		header.put(record.rawName);
+		if (zip64) {
+			header.putShort((short) ZIP64_EXTRA_ID);
+			header.putShort((short) 16);
+			header.putLong(record.size);
+			header.putLong(record.compressedSize);
+		}
+		header.put(record.extra);
+		out.write(header.array());
+		position += header.capacity();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			writeCentralDirectory();
+		} finally {
+			deflater.end();
+			out.close();
+		}
+	}
+
+	private void writeCentralDirectory() throws IOException {
+		val directoryOffset = position;
+		for (val record : records) {
+			val zip64Size = record.size >= MAX_32;
+			val zip64CompressedSize = record.compressedSize >= MAX_32;
+			val zip64Offset = record.localHeaderOffset >= MAX_32;
+			val zip64Length = (zip64Size ? 8 : 0) + (zip64CompressedSize ? 8 : 0) + (zip64Offset ? 8 : 0);
+			val extraLength = record.extra.length + (zip64Length == 0 ? 0 : 4 + zip64Length);
+
+			val header = buffer(CENTRAL_HEADER_SIZE + record.rawName.length + extraLength);
+			header.putInt(CENTRAL_HEADER_SIGNATURE);
+			header.putShort((short) record.versionMadeBy);
+			header.putShort((short) (zip64Length == 0 ? record.versionNeeded : Math.max(VERSION_ZIP64, record.versionNeeded)));
+			header.putShort((short) record.flags);
+			header.putShort((short) record.method);
+			header.putInt(record.dosTime);
+			header.putInt((int) record.crc);
+			header.putInt((int) (zip64CompressedSize ? MAX_32 : record.compressedSize));
+			header.putInt((int) (zip64Size ? MAX_32 : record.size));
+			header.putShort((short) record.rawName.length);
+			header.putShort((short) extraLength);
+			header.putShort((short) 0); // comment length
+			header.putShort((short) 0); // disk number
+			header.putShort((short) 0); // internal attributes
+			header.putInt(record.externalAttributes);
+			header.putInt((int) (zip64Offset ? MAX_32 : record.localHeaderOffset));
+			header.put(record.rawName);
+			if (zip64Length != 0) {
+				header.putShort((short) ZIP64_EXTRA_ID);
+				header.putShort((short) zip64Length);
+				if (zip64Size)
+					header.putLong(record.size);
+				if (zip64CompressedSize)
+					header.putLong(record.compressedSize);
+				if (zip64Offset)
+					header.putLong(record.localHeaderOffset);
+			}
+			header.put(record.extra);
+			out.write(header.array());
+			position += header.capacity();
+		}
+		val directorySize = position - directoryOffset;
+		val count = records.size();
+
+		val zip64 = count >= MAX_16 || directorySize >= MAX_32 || directoryOffset >= MAX_32;
+		if (zip64) {
+			val zip64EndOffset = position;
+			val end = buffer(ZIP64_END_SIZE + ZIP64_LOCATOR_SIZE);
+			end.putInt(ZIP64_END_SIGNATURE);
+			end.putLong(ZIP64_END_SIZE - 12);
+			end.putShort((short) VERSION_ZIP64);
+			end.putShort((short) VERSION_ZIP64);
+			end.putInt(0); // disk number
+			end.putInt(0); // disk with central directory
+			end.putLong(count);
+			end.putLong(count);
+			end.putLong(directorySize);
+			end.putLong(directoryOffset);
+			end.putInt(ZIP64_LOCATOR_SIGNATURE);
+			end.putInt(0); // disk with zip64 end record
+			end.putLong(zip64EndOffset);
+			end.putInt(1); // total disks
+			out.write(end.array());
+			position += end.capacity();
+		}
+
+		val end = buffer(END_SIZE);
+		end.putInt(END_SIGNATURE);
+		end.putShort((short) 0); // disk number
+		end.putShort((short) 0); // disk with central directory
+		end.putShort((short) (zip64 ? MAX_16 : count));
+		end.putShort((short) (zip64 ? MAX_16 : count));
+		end.putInt((int) (zip64 ? MAX_32 : directorySize));
+		end.putInt((int) (zip64 ? MAX_32 : directoryOffset));
+		end.putShort((short) 0); // comment length
+		out.write(end.array());
+		position += end.capacity();
+	}
+
+	private static class CentralRecord {
+		final byte[] rawName;
+		final int versionMadeBy;
+		final int versionNeeded;
+		final int flags;
+		final int method;
+		final int dosTime;
+		final long crc;
+		final long compressedSize;
+		final long size;
+		final int externalAttributes;
+		final byte[] extra;
+		long localHeaderOffset;
+
+		CentralRecord(byte[] rawName, int versionMadeBy, int versionNeeded, int flags, int method, int dosTime, long crc, long compressedSize, long size, int externalAttributes, byte[] extra) {
+			this.rawName = rawName;
+			this.versionMadeBy = versionMadeBy;
+			this.versionNeeded = versionNeeded;
+			this.flags = flags;
+			this.method = method;
+			this.dosTime = dosTime;
+			this.crc = crc;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.externalAttributes = externalAttributes;
+			this.extra = extra;
+		}
+	}
+}
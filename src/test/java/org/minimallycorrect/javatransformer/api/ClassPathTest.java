@@ -1,13 +1,30 @@
 package org.minimallycorrect.javatransformer.api;
 
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import lombok.val;
 
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.minimallycorrect.javatransformer.internal.util.IOUtil;
 
 public class ClassPathTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Test
 	public void checkAddReturnsCorrectValue() {
 		val classPath = new ClassPath();
@@ -16,4 +33,161 @@ public class ClassPathTest {
 		Assert.assertFalse("path should not be added successfully", classPath.addPath(Paths.get("./test")));
 		Assert.assertFalse("path should not be added successfully", classPath.addPath(Paths.get("./asds/../test")));
 	}
+
+	@Test
+	public void checkToStringWithoutParent() {
+		val classPath = new ClassPath();
+		Assert.assertTrue(classPath.toString().startsWith("[[]"));
+		Assert.assertTrue(classPath.createChildWithExtraPaths(Collections.emptyList()).toString().startsWith("[[[]"));
+	}
+
+	@Test
+	public void checkJarClassesExist() throws Exception {
+		val jar = folder.newFile("test.jar");
+		try (ZipOutputStream os = new ZipOutputStream(new FileOutputStream(jar))) {
+			os.putNextEntry(new ZipEntry("org/example/Example.class"));
+			os.write(new byte[]{0, 1, 2, 3});
+			os.putNextEntry(new ZipEntry("org/example/Source.java"));
+			os.write("package org.example; class Source { class Inner {} }".getBytes(StandardCharsets.UTF_8));
+			os.closeEntry();
+		}
+
+		val classPath = new ClassPath(Collections.singletonList(jar.toPath()));
+		Assert.assertTrue(classPath.classExists("org.example.Example"));
+		Assert.assertTrue(classPath.classExists("org.example.Source"));
+		Assert.assertTrue(classPath.classExists("org.example.Source.Inner"));
+		Assert.assertFalse(classPath.classExists("org.example.Missing"));
+		Assert.assertEquals(Arrays.asList("org.example.Example", "org.example.Source"), classPath.getClassesInPackage("org.example"));
+		Assert.assertEquals(Collections.singletonList("org.example.Source.Inner"), classPath.getClassesInPackage("org.example.Source"));
+	}
+
+	@Test
+	public void checkClassFilesReadAfterClose() throws Exception {
+		val jar = folder.newFile("classes.jar");
+		try (ZipOutputStream os = new ZipOutputStream(new FileOutputStream(jar))) {
+			for (Class<?> clazz : Arrays.asList(ClassPathTest.class, JavaTransformerTest.class)) {
+				val name = clazz.getName().replace('.', '/') + ".class";
+				os.putNextEntry(new ZipEntry(name));
+				try (InputStream is = clazz.getClassLoader().getResourceAsStream(name)) {
+					os.write(IOUtil.readFully(is, -1));
+				}
+				os.closeEntry();
+			}
+		}
+
+		val classPath = new ClassPath().createChildWithExtraPaths(Collections.singletonList(jar.toPath()));
+		Assert.assertNotNull(classPath.getClassHierarchy().get("org/minimallycorrect/javatransformer/api/ClassPathTest"));
+		classPath.close();
+		// jars are reopened when needed after closing
+		Assert.assertNotNull(classPath.getClassHierarchy().get("org/minimallycorrect/javatransformer/api/JavaTransformerTest"));
+		classPath.close();
+	}
+
+	@Test
+	public void checkIndexDirectory() throws Exception {
+		val source = folder.newFolder("source").toPath();
+		val index = folder.newFolder("index").toPath();
+		val first = source.resolve("First.java");
+		val second = source.resolve("Second.java");
+		Files.write(first, "package org.example; class First {}".getBytes(StandardCharsets.UTF_8));
+		Files.write(second, "package org.example; class Second {}".getBytes(StandardCharsets.UTF_8));
+
+		val classPath = new ClassPath(Collections.singletonList(source));
+		classPath.setIndexDirectory(index);
+		Assert.assertTrue(classPath.classExists("org.example.First"));
+		Assert.assertTrue(classPath.classExists("org.example.Second"));
+		Assert.assertEquals(1, Files.list(index).count());
+
+		// unchanged size and modification time, so the indexed class names should be used instead of parsing
+		val lastModified = Files.getLastModifiedTime(first);
+		Files.write(first, "not valid java source, at all!!!!!!".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(first, lastModified);
+		Files.delete(second);
+		Files.write(source.resolve("Third.java"), "package org.example; class Third {}".getBytes(StandardCharsets.UTF_8));
+
+		val refreshed = new ClassPath(Collections.singletonList(source));
+		refreshed.setIndexDirectory(index);
+		Assert.assertTrue(refreshed.classExists("org.example.First"));
+		Assert.assertFalse(refreshed.classExists("org.example.Second"));
+		Assert.assertTrue(refreshed.classExists("org.example.Third"));
+	}
+
+	@Test
+	public void checkMultipleInputs() throws Exception {
+		val inputs = new ArrayList<Path>();
+		for (int i = 0; i < 4; i++) {
+			val source = folder.newFolder("source" + i).toPath();
+			for (int j = 0; j < 8; j++) {
+				val directory = Files.createDirectories(source.resolve("org/example" + i + "/sub" + j));
+				Files.write(directory.resolve("Example.java"), ("package org.example" + i + ".sub" + j + "; class Example {}").getBytes(StandardCharsets.UTF_8));
+			}
+			inputs.add(source);
+		}
+
+		val classPath = new ClassPath(inputs);
+		for (int i = 0; i < 4; i++)
+			for (int j = 0; j < 8; j++)
+				Assert.assertTrue(classPath.classExists("org.example" + i + ".sub" + j + ".Example"));
+
+		val extra = folder.newFolder("extra").toPath();
+		Files.write(extra.resolve("Extra.java"), "class Extra {}".getBytes(StandardCharsets.UTF_8));
+		classPath.addPath(extra);
+		Assert.assertTrue(classPath.classExists("Extra"));
+	}
+
+	@Test
+	public void checkChildClassPaths() throws Exception {
+		val root = folder.newFolder("root").toPath();
+		Files.write(root.resolve("Root.java"), "class Root {}".getBytes(StandardCharsets.UTF_8));
+		ClassPath classPath = new ClassPath(Collections.singletonList(root));
+		val first = classPath;
+		for (int i = 0; i < 10; i++) {
+			val child = folder.newFolder("child" + i).toPath();
+			Files.write(child.resolve("Child" + i + ".java"), ("class Child" + i + " {}").getBytes(StandardCharsets.UTF_8));
+			classPath = classPath.createChildWithExtraPaths(Collections.singletonList(child));
+		}
+
+		Assert.assertTrue(classPath.classExists("Root"));
+		Assert.assertTrue(classPath.classExists("Child0"));
+		Assert.assertTrue(classPath.classExists("Child9"));
+		Assert.assertFalse(first.classExists("Child0"));
+		Assert.assertFalse("path should already exist in a parent", classPath.addPath(root));
+
+		// changes to a parent after the merged snapshot was built should still be visible to children
+		val late = folder.newFolder("late").toPath();
+		Files.write(late.resolve("Late.java"), "class Late {}".getBytes(StandardCharsets.UTF_8));
+		Assert.assertFalse(classPath.classExists("Late"));
+		Assert.assertTrue(first.addPath(late));
+		Assert.assertTrue(classPath.classExists("Late"));
+		Assert.assertEquals(Arrays.asList("Child9", "Late", "Root"), classPath.getClassesInPackage("").subList(9, 12));
+	}
+
+	@Test
+	public void checkPlatformClasses() throws Exception {
+		val classPath = new ClassPath();
+		Assert.assertTrue(classPath.classExists("java.lang.String"));
+		Assert.assertTrue(classPath.classExists("java.util.Map$Entry"));
+		Assert.assertFalse(classPath.classExists("java.util.Map.Entry"));
+		Assert.assertFalse(classPath.classExists("java.lang.Missing"));
+		Assert.assertTrue(classPath.getClassesInPackage("java.util").contains("java.util.List"));
+
+		val javaHome = folder.newFolder("jdk").toPath();
+		Files.createDirectories(javaHome.resolve("lib"));
+		try (ZipOutputStream os = new ZipOutputStream(Files.newOutputStream(javaHome.resolve("lib/rt.jar")))) {
+			os.putNextEntry(new ZipEntry("java/lang/Target.class"));
+			os.putNextEntry(new ZipEntry("sun/misc/Internal.class"));
+			os.closeEntry();
+		}
+		classPath.setPlatformJavaHome(javaHome);
+		val child = classPath.createChildWithExtraPaths(Collections.emptyList());
+		Assert.assertTrue(child.classExists("java.lang.Target"));
+		Assert.assertFalse(child.classExists("java.lang.String"));
+		Assert.assertFalse(child.classExists("sun.misc.Internal"));
+
+		classPath.setPlatformJavaHome(folder.newFolder("empty").toPath());
+		try {
+			classPath.classExists("java.lang.String");
+			Assert.fail("expected missing platform classes to throw");
+		} catch (TransformationException ignored) {}
+	}
 }
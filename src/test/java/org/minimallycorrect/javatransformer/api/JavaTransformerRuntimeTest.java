@@ -8,6 +8,7 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 
 import lombok.val;
 
@@ -97,4 +98,29 @@ public class JavaTransformerRuntimeTest {
 		Assert.assertEquals(null, System.getProperty("finishedTestAbortEarly"));
 	}
 
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testBatchedInsertion() throws Exception {
+		final Path input = JavaTransformer.pathFromClass(JavaTransformerTest.class);
+		final String name = "org.minimallycorrect.javatransformer.transform.CodeFragmentTesting";
+		JavaTransformer transformer = new JavaTransformer();
+
+		transformer.addTransformer(name, c -> {
+			val callbackCaller = c.getMethods().filter(method -> method.getName().equals("callbackCaller")).findFirst().get().getCodeFragment();
+			val method = c.getMethods().filter(it -> it.getName().equals("testMethodCallExpression")).findFirst().get();
+			val cf = method.getCodeFragment();
+			assert cf != null && callbackCaller != null;
+			val methodCalls = cf.findFragments(CodeFragment.MethodCall.class);
+			Assert.assertEquals(EXPECTED_METHOD_CALL_COUNT, methodCalls.size());
+			cf.insertAt(methodCalls, callbackCaller, CodeFragment.InsertionPosition.OVERWRITE);
+		});
+
+		transformer.load(input);
+		// defined in a separate class loader, as testTransformRuntime defines the same class in this one
+		val clazz = transformer.defineClass(new ClassLoader(getClass().getClassLoader()) {}, name);
+		val list = new ArrayList<String>();
+		val instance = clazz.getConstructor(Consumer.class).newInstance((Consumer<String>) list::add);
+		clazz.getMethod("testMethodCallExpression").invoke(instance);
+		Assert.assertEquals(EXPECTED_METHOD_CALL_INPUTS, list);
+	}
 }
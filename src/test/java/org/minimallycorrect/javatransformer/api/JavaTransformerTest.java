@@ -8,7 +8,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import lombok.val;
@@ -86,6 +88,7 @@ public class JavaTransformerTest {
 			});
 			c.getFields().collect(Collectors.toList());
 			c.getInterfaceTypes();
+			Assert.assertNotNull("editor: " + c);
 			c.getMembers().collect(Collectors.toList());
 			c.getConstructors().collect(Collectors.toList());
 			c.getMethods().forEach(it -> {
@@ -122,4 +125,47 @@ public class JavaTransformerTest {
 
 		Assert.assertTrue(exists(output.resolve("org/minimallycorrect/javatransformer/api/JavaTransformerTest.")));
 	}
+
+	@Test
+	public void testParallelTransformMatchesSerial() throws Exception {
+		val serial = transformWithParallelism(1);
+		val parallel = transformWithParallelism(4);
+
+		Assert.assertEquals("Entries should be in the same order", new ArrayList<>(serial.keySet()), new ArrayList<>(parallel.keySet()));
+		serial.forEach((name, bytes) -> Assert.assertArrayEquals(name + " should be identical", bytes, parallel.get(name)));
+	}
+
+	private Map<String, byte[]> transformWithParallelism(int parallelism) {
+		JavaTransformer transformer = new JavaTransformer();
+		transformer.setParallelism(parallelism);
+		transformer.getClassPath().addPaths(extraPaths);
+		transformer.addTransformer(c -> c.accessFlags(it -> it.makeAccessible(true)));
+		transformer.load(input);
+		return new LinkedHashMap<>(transformer.getTransformedFiles());
+	}
+
+	@Test
+	public void testStreamingTransform() throws Exception {
+		Path output = folder.newFolder("output").toPath();
+
+		JavaTransformer transformer = new JavaTransformer();
+		transformer.getClassPath().addPaths(extraPaths);
+		transformer.setStreaming(true);
+		val retained = "org/minimallycorrect/javatransformer/api/JavaTransformerTest.";
+		transformer.setRetainTransformedFiles(it -> it.startsWith(retained));
+		transformer.addTransformer(c -> c.accessFlags(it -> it.makeAccessible(true)));
+
+		BooleanHolder holder = new BooleanHolder(false);
+		transformer.getAfterTransform().add(it -> {
+			holder.value = true;
+			Assert.assertEquals(1, it.getTransformedFiles().size());
+			Assert.assertTrue(it.getTransformedFiles().keySet().iterator().next().startsWith(retained));
+		});
+
+		transformer.transform(input, output);
+
+		Assert.assertTrue("afterTransform handler must run", holder.value);
+		Assert.assertTrue(transformer.getTransformedFiles().isEmpty());
+		Assert.assertTrue(exists(output.resolve("org/minimallycorrect/javatransformer/api/JavaTransformerTest.")));
+	}
 }
@@ -0,0 +1,54 @@
+package org.minimallycorrect.javatransformer.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsSummaryTest {
+	@Test
+	public void testSummary() {
+		val reports = new ArrayList<String>();
+		val summary = new MetricsSummary(reports::add);
+		val entries = new ArrayList<EntryMetrics>();
+		Transformer transformer = editor -> editor.accessFlags(it -> it.makeAccessible(true));
+
+		val javaTransformer = new JavaTransformer();
+		javaTransformer.addTransformer(MetricsSummaryTest.class.getName(), transformer);
+		javaTransformer.setMetricsListener(new MetricsListener() {
+			@Override
+			public void onEntry(EntryMetrics metrics) {
+				entries.add(metrics);
+				summary.onEntry(metrics);
+			}
+
+			@Override
+			public void onFinished() {
+				summary.onFinished();
+			}
+		});
+		javaTransformer.load(JavaTransformer.pathFromClass(MetricsSummaryTest.class));
+
+		Assert.assertEquals(1, reports.size());
+		Assert.assertEquals(entries.size(), summary.getEntries());
+		Assert.assertEquals(1, summary.getCount(EntryMetrics.Outcome.MODIFIED));
+		Assert.assertTrue(summary.getCount(EntryMetrics.Outcome.SKIPPED) > 0);
+		Assert.assertEquals(1, summary.getParsed());
+		Assert.assertTrue(summary.getNanos(EntryMetrics.Phase.PARSE) > 0);
+		Assert.assertTrue(summary.getTransformerNanos().get(transformer) > 0);
+
+		for (EntryMetrics metrics : entries) {
+			if (metrics.getOutcome() != EntryMetrics.Outcome.MODIFIED)
+				continue;
+			Assert.assertTrue(metrics.getRelativeName().endsWith("MetricsSummaryTest.class"));
+			Assert.assertTrue(metrics.isParsed());
+			Assert.assertTrue(metrics.getBytesIn() > 0);
+			Assert.assertTrue(metrics.getBytesOut() > 0);
+			Assert.assertTrue(metrics.getNanos(EntryMetrics.Phase.READ) > 0);
+			Assert.assertEquals(Collections.singleton(transformer), metrics.getTransformerNanos().keySet());
+		}
+	}
+}
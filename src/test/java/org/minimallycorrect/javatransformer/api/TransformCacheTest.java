@@ -0,0 +1,122 @@
+package org.minimallycorrect.javatransformer.api;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import lombok.SneakyThrows;
+import lombok.val;
+
+import org.jetbrains.annotations.Nullable;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.minimallycorrect.javatransformer.internal.util.IOUtil;
+
+public class TransformCacheTest {
+	private static final String NAME = "org/minimallycorrect/javatransformer/api/TransformCacheTest.class";
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@SneakyThrows
+	private static byte[] readClass() {
+		try (InputStream is = TransformCacheTest.class.getResourceAsStream("TransformCacheTest.class")) {
+			return IOUtil.readFully(is, -1);
+		}
+	}
+
+	@SneakyThrows
+	private static long countEntries(Path directory) {
+		try (Stream<Path> files = Files.walk(directory)) {
+			return files.filter(Files::isRegularFile).count();
+		}
+	}
+
+	@Test
+	public void testCachedResultReused() throws Exception {
+		val cache = new TransformCache(folder.newFolder("cache").toPath(), 1024 * 1024);
+		val input = readClass();
+		val transformer = new CountingTransformer("1");
+
+		val first = transform(cache, transformer, input);
+		val second = transform(cache, transformer, input);
+		Assert.assertEquals(1, transformer.count.get());
+		Assert.assertArrayEquals(first, second);
+		Assert.assertFalse(Arrays.equals(input, second));
+
+		// a new version must not reuse results from the old one
+		transformer.version = "2";
+		transform(cache, transformer, input);
+		Assert.assertEquals(2, transformer.count.get());
+
+		// no version, so never cached
+		transformer.version = null;
+		transform(cache, transformer, input);
+		transform(cache, transformer, input);
+		Assert.assertEquals(4, transformer.count.get());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		val directory = folder.newFolder("cache").toPath();
+		val input = readClass();
+		val cache = new TransformCache(directory, input.length * 3L);
+
+		for (int i = 0; i < 10; i++)
+			transform(cache, new CountingTransformer(String.valueOf(i)), input);
+
+		Assert.assertTrue(cache.getSize() <= cache.getMaxSize());
+		Assert.assertTrue(countEntries(directory) <= 3);
+		Assert.assertEquals(cache.getSize(), new TransformCache(directory, cache.getMaxSize()).getSize());
+
+		cache.clear();
+		Assert.assertEquals(0, countEntries(directory));
+	}
+
+	@Test
+	public void testUntargetedClassNotRead() throws Exception {
+		val javaTransformer = new JavaTransformer();
+		javaTransformer.setCache(new TransformCache(folder.newFolder("cache").toPath(), 1024 * 1024));
+		javaTransformer.addTransformer("some.OtherClass", new CountingTransformer("1"));
+		Supplier<byte[]> data = () -> {
+			throw new AssertionError("Untargeted class should not be read");
+		};
+
+		Assert.assertSame(data, javaTransformer.transformBytes(data, NAME, null));
+	}
+
+	private byte[] transform(TransformCache cache, Transformer transformer, byte[] input) {
+		val javaTransformer = new JavaTransformer();
+		javaTransformer.setCache(cache);
+		javaTransformer.addTransformer(transformer);
+		return javaTransformer.transformBytes(() -> input, NAME, null).get();
+	}
+
+	private static class CountingTransformer implements Transformer {
+		final AtomicInteger count = new AtomicInteger();
+		@Nullable
+		String version;
+
+		CountingTransformer(@Nullable String version) {
+			this.version = version;
+		}
+
+		@Override
+		public void transform(ClassInfo editor) {
+			count.incrementAndGet();
+			editor.accessFlags(it -> it.makeAccessible(true));
+		}
+
+		@Nullable
+		@Override
+		public String getVersion() {
+			return version;
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package org.minimallycorrect.javatransformer.internal;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.minimallycorrect.javatransformer.api.ClassPath;
+import org.minimallycorrect.javatransformer.api.TransformationException;
+
+public class ClassHierarchyTest {
+	private static final String PREFIX = "org/minimallycorrect/javatransformer/internal/ClassHierarchyTest$";
+
+	private static ClassHierarchy testHierarchy() throws Exception {
+		val classes = Paths.get(ClassHierarchyTest.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		return new ClassPath(Collections.singletonList(classes)).getClassHierarchy();
+	}
+
+	@Test
+	public void testPlatformClasses() {
+		val hierarchy = new ClassPath().getClassHierarchy();
+		Assert.assertEquals("java/util/AbstractList", hierarchy.getCommonSuperClass("java/util/ArrayList", "java/util/LinkedList"));
+		Assert.assertEquals("java/lang/Number", hierarchy.getCommonSuperClass("java/lang/Integer", "java/lang/Long"));
+		Assert.assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("java/lang/String", "java/lang/Integer"));
+		Assert.assertEquals("java/util/List", hierarchy.getCommonSuperClass("java/util/List", "java/util/ArrayList"));
+		Assert.assertEquals("java/lang/Object", hierarchy.getCommonSuperClass("java/util/List", "java/util/Set"));
+		Assert.assertNull(hierarchy.get("org/example/Missing"));
+	}
+
+	@Test
+	public void testClassPathClasses() throws Exception {
+		val hierarchy = testHierarchy();
+		Assert.assertEquals(PREFIX + "Base", hierarchy.getCommonSuperClass(PREFIX + "First", PREFIX + "Second"));
+		Assert.assertEquals(PREFIX + "Base", hierarchy.getCommonSuperClass(PREFIX + "Second", PREFIX + "First"));
+		Assert.assertEquals(PREFIX + "Base", hierarchy.getCommonSuperClass(PREFIX + "Base", PREFIX + "First"));
+		Assert.assertEquals("java/lang/Runnable", hierarchy.getCommonSuperClass("java/lang/Runnable", PREFIX + "First"));
+		Assert.assertEquals("java/lang/Object", hierarchy.getCommonSuperClass(PREFIX + "First", "java/lang/String"));
+	}
+
+	@Test(expected = TransformationException.class)
+	public void testMissingClass() throws Exception {
+		testHierarchy().getCommonSuperClass(PREFIX + "First", "org/example/Missing");
+	}
+
+	private static abstract class Base implements Runnable {}
+
+	private static abstract class First extends Base {}
+
+	private static abstract class Second extends Base {}
+}
@@ -8,6 +8,7 @@ import lombok.val;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.github.javaparser.JavaParser;
 import com.github.javaparser.ast.type.TypeParameter;
 
 import org.minimallycorrect.javatransformer.api.ClassPath;
@@ -107,4 +108,26 @@ public class ResolutionContextTest {
 		Assert.assertNotNull(t);
 		Assert.assertEquals("java.util.Hashtable", t.getClassName());
 	}
+
+	@Test
+	public void testImportsAndCache() {
+		val imports = Arrays.asList(JavaParser.parseImport("import java.util.List;"), JavaParser.parseImport("import static java.util.Collections.emptyList;"), JavaParser.parseImport("import java.util.concurrent.*;"));
+		val context = ResolutionContext.of("org.example", imports, Collections.emptyList(), new ClassPath(Collections.emptyList()));
+		val list = context.resolve("List<String>");
+		Assert.assertNotNull(list);
+		Assert.assertEquals("java.util.List", list.getClassName());
+		Assert.assertEquals("java.lang.String", list.getTypeArguments().get(0).getClassName());
+		Assert.assertSame(list, context.resolve("List<String>"));
+		Assert.assertEquals("java.util.concurrent.Future", context.resolve("Future").getClassName());
+	}
+
+	@Test
+	public void testOnDemandImportOrder() {
+		val imports = Arrays.asList(JavaParser.parseImport("import java.awt.*;"), JavaParser.parseImport("import java.util.*;"));
+		val context = ResolutionContext.of("org.example", imports, Collections.emptyList(), new ClassPath(Collections.emptyList()));
+		// both packages have a List, the first import wins
+		Assert.assertEquals("java.awt.List", context.resolve("List").getClassName());
+		Assert.assertEquals("java.util.ArrayList", context.resolve("ArrayList").getClassName());
+		Assert.assertEquals("java.lang.String", context.resolve("String").getClassName());
+	}
 }
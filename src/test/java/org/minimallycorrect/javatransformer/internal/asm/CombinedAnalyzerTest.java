@@ -0,0 +1,96 @@
+package org.minimallycorrect.javatransformer.internal.asm;
+
+import java.io.InputStream;
+
+import lombok.SneakyThrows;
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import org.minimallycorrect.javatransformer.internal.util.IOUtil;
+
+public class CombinedAnalyzerTest {
+	@SneakyThrows
+	private static MethodNode readMethod(String name) {
+		val node = new ClassNode();
+		try (InputStream is = CombinedAnalyzerTest.class.getResourceAsStream("CombinedAnalyzerTest$Target.class")) {
+			new ClassReader(IOUtil.readFully(is, -1)).accept(node, 0);
+		}
+		for (MethodNode method : node.methods)
+			if (method.name.equals(name))
+				return method;
+		throw new AssertionError("Missing method " + name);
+	}
+
+	private static int indexOfCall(MethodNode method, String name) {
+		for (AbstractInsnNode insn : method.instructions.toArray())
+			if (insn instanceof MethodInsnNode && ((MethodInsnNode) insn).name.equals(name))
+				return method.instructions.indexOf(insn);
+		throw new AssertionError("Missing call to " + name);
+	}
+
+	@Test
+	public void testPartialAnalysisMatchesFullAnalysis() throws Exception {
+		val method = readMethod("branches");
+		val owner = "org/minimallycorrect/javatransformer/internal/asm/CombinedAnalyzerTest$Target";
+		val call = indexOfCall(method, "first");
+		val analysed = CombinedAnalyzer.findInstructionsReaching(method, call, call);
+		val partial = CombinedAnalyzer.analyze(new CombinedInterpreter(), owner, method, analysed);
+		val full = CombinedAnalyzer.analyze(new CombinedInterpreter(), owner, method);
+
+		Assert.assertTrue(analysed[call]);
+		Assert.assertTrue(analysed[call + 1]);
+		Assert.assertFalse(analysed[indexOfCall(method, "second")]);
+		for (int i = 0; i < full.length; i++) {
+			if (analysed[i])
+				Assert.assertEquals(String.valueOf(full[i]), String.valueOf(partial[i]));
+			else
+				Assert.assertNull(partial[i]);
+		}
+	}
+
+	@Test
+	public void testLoopIsAnalysed() throws Exception {
+		val method = readMethod("loop");
+		val call = indexOfCall(method, "first");
+		val analysed = CombinedAnalyzer.findInstructionsReaching(method, call, call);
+
+		// the rest of the loop body can reach the call through the jump back to the condition
+		Assert.assertTrue(analysed[indexOfCall(method, "second")]);
+	}
+
+	@SuppressWarnings("unused")
+	private static class Target {
+		static int first(int value) {
+			return value;
+		}
+
+		static int second(int value) {
+			return value;
+		}
+
+		int branches(int value) {
+			if (value > 3)
+				value = first(value);
+			else
+				value++;
+			for (int i = 0; i < value; i++)
+				value = second(value) + i;
+			return value;
+		}
+
+		int loop(int value) {
+			for (int i = 0; i < value; i++) {
+				value = first(value);
+				value = second(value);
+			}
+			return value;
+		}
+	}
+}
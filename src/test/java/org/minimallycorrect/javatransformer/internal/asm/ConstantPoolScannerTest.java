@@ -0,0 +1,84 @@
+package org.minimallycorrect.javatransformer.internal.asm;
+
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import lombok.SneakyThrows;
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.minimallycorrect.javatransformer.api.ClassInfo;
+import org.minimallycorrect.javatransformer.api.JavaTransformer;
+import org.minimallycorrect.javatransformer.api.Transformer;
+import org.minimallycorrect.javatransformer.internal.util.IOUtil;
+
+public class ConstantPoolScannerTest {
+	@SneakyThrows
+	private static byte[] readClass(String name) {
+		try (InputStream is = ConstantPoolScannerTest.class.getResourceAsStream(name)) {
+			return IOUtil.readFully(is, -1);
+		}
+	}
+
+	@Test
+	public void testContainsAnnotation() {
+		val bytes = readClass("ConstantPoolScannerTest.class");
+
+		Assert.assertTrue(ConstantPoolScanner.forAnnotations(Collections.singletonList(Test.class.getName())).containsAny(bytes));
+		Assert.assertFalse(ConstantPoolScanner.forAnnotations(Collections.singletonList(Deprecated.class.getName())).containsAny(bytes));
+		Assert.assertTrue(ConstantPoolScanner.forAnnotations(Collections.singletonList("not.a.class")).containsAny(new byte[]{1, 2, 3}));
+	}
+
+	@Test
+	public void testAnnotationTargetedTransformer() {
+		val javaTransformer = new JavaTransformer();
+		val deprecated = new AnnotationTransformer(Deprecated.class.getName());
+		val test = new AnnotationTransformer(Test.class.getName());
+		javaTransformer.addTransformer(deprecated);
+		javaTransformer.addTransformer(test);
+
+		val bytes = readClass("ConstantPoolScannerTest.class");
+		Supplier<byte[]> data = () -> bytes;
+		Assert.assertSame(data, javaTransformer.transformClass(data, ConstantPoolScannerTest.class.getName()));
+		// the scan only filters, methods are annotated with @Test but the class isn't
+		Assert.assertEquals(0, deprecated.count.get());
+		Assert.assertEquals(0, test.count.get());
+
+		val annotated = readClass("ConstantPoolScannerTest$Annotated.class");
+		javaTransformer.transformClass(() -> annotated, Annotated.class.getName());
+		Assert.assertEquals(1, deprecated.count.get());
+		Assert.assertEquals(0, test.count.get());
+	}
+
+	@Deprecated
+	private static class Annotated {}
+
+	private static class AnnotationTransformer implements Transformer.TargetedTransformer {
+		final AtomicInteger count = new AtomicInteger();
+		final String annotation;
+
+		AnnotationTransformer(String annotation) {
+			this.annotation = annotation;
+		}
+
+		@Override
+		public void transform(ClassInfo editor) {
+			count.incrementAndGet();
+		}
+
+		@Override
+		public Collection<String> getTargetClasses() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public Collection<String> getTargetAnnotations() {
+			return Collections.singletonList(annotation);
+		}
+	}
+}
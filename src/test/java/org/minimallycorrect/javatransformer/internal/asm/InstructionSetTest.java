@@ -0,0 +1,58 @@
+package org.minimallycorrect.javatransformer.internal.asm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnNode;
+
+public class InstructionSetTest {
+	private static List<AbstractInsnNode> createInstructions(int count) {
+		val insns = new ArrayList<AbstractInsnNode>();
+		for (int i = 0; i < count; i++)
+			insns.add(new InsnNode(Opcodes.NOP));
+		return insns;
+	}
+
+	@Test
+	public void testUnion() {
+		val insns = createInstructions(100);
+		val a = InstructionSet.copyOf(insns.subList(0, 60));
+		val b = InstructionSet.copyOf(insns.subList(40, 100));
+		val union = InstructionSet.union(a, b);
+
+		Assert.assertEquals(100, union.size());
+		Assert.assertEquals(new HashSet<>(insns), union);
+		for (AbstractInsnNode insn : insns)
+			Assert.assertTrue(union.contains(insn));
+		Assert.assertFalse(union.contains(new InsnNode(Opcodes.NOP)));
+	}
+
+	@Test
+	public void testUnionReusesSuperset() {
+		val insns = createInstructions(10);
+		val all = InstructionSet.copyOf(insns);
+		val some = InstructionSet.copyOf(Arrays.asList(insns.get(2), insns.get(7)));
+
+		Assert.assertSame(all, InstructionSet.union(all, some));
+		Assert.assertSame(all, InstructionSet.union(some, all));
+		Assert.assertSame(some, InstructionSet.union(some, InstructionSet.EMPTY));
+		Assert.assertSame(some, InstructionSet.union(some, InstructionSet.of(insns.get(7))));
+	}
+
+	@Test
+	public void testCopyOfRemovesDuplicates() {
+		val insn = new InsnNode(Opcodes.NOP);
+		val set = InstructionSet.copyOf(Arrays.asList(insn, insn));
+
+		Assert.assertEquals(1, set.size());
+		Assert.assertEquals(InstructionSet.of(insn), set);
+	}
+}
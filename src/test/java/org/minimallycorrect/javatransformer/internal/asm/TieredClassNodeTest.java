@@ -0,0 +1,156 @@
+package org.minimallycorrect.javatransformer.internal.asm;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import lombok.SneakyThrows;
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.MethodNode;
+
+import org.minimallycorrect.javatransformer.api.AccessFlags;
+import org.minimallycorrect.javatransformer.api.Type;
+import org.minimallycorrect.javatransformer.internal.ByteCodeInfo;
+import org.minimallycorrect.javatransformer.internal.util.IOUtil;
+
+public class TieredClassNodeTest {
+	@SneakyThrows
+	private static byte[] readTarget() {
+		try (InputStream is = TieredClassNodeTest.class.getResourceAsStream("TieredClassNodeTest$Target.class")) {
+			return IOUtil.readFully(is, -1);
+		}
+	}
+
+	private static MethodNode getMethod(ClassNode node, String name) {
+		for (MethodNode method : node.methods)
+			if (method.name.equals(name))
+				return method;
+		throw new AssertionError("Missing method " + name);
+	}
+
+	@Test
+	public void testCodeReadLazily() throws Exception {
+		val tiered = new TieredClassNode(TieredClassNodeTest::readTarget);
+		Assert.assertFalse(tiered.isRead());
+
+		val node = tiered.get();
+		Assert.assertTrue(tiered.isRead());
+		Assert.assertFalse(tiered.hasCode());
+		Assert.assertEquals(0, getMethod(node, "first").instructions.size());
+
+		// edits made before the code is read are kept, and code still matches the methods it came from
+		getMethod(node, "first").name = "renamed";
+		node.methods.remove(getMethod(node, "second"));
+		node.methods.add(0, new MethodNode(0, "added", "()V", null, null));
+
+		Assert.assertSame(node, tiered.getWithCode());
+		Assert.assertTrue(tiered.hasCode());
+		Assert.assertNotEquals(0, getMethod(node, "renamed").instructions.size());
+		Assert.assertEquals(0, getMethod(node, "added").instructions.size());
+
+		val writer = new ClassWriter(tiered.getReader(), ClassWriter.COMPUTE_MAXS);
+		node.accept(writer);
+		val written = new ClassNode();
+		new ClassReader(writer.toByteArray()).accept(written, 0);
+		Assert.assertNotEquals(0, getMethod(written, "renamed").instructions.size());
+	}
+
+	@Test
+	public void testUnchangedMethodsCopied() throws Exception {
+		val tiered = new TieredClassNode(TieredClassNodeTest::readTarget);
+		val info = new ByteCodeInfo(tiered, "Target", new HashMap<>());
+		info.getMethods().filter(it -> it.getName().equals("first")).forEach(it -> it.setName("renamed"));
+		info.getMethods().filter(it -> it.getName().equals("second")).forEach(it -> it.setAccessFlags(it.getAccessFlags().with(AccessFlags.ACC_PUBLIC)));
+
+		val written = new ClassNode();
+		new ClassReader(info.toByteArray()).accept(written, 0);
+		// code was never read, so it can only have been copied from the original class
+		Assert.assertFalse(tiered.hasCode());
+		Assert.assertNotEquals(0, getMethod(written, "renamed").instructions.size());
+		Assert.assertNotEquals(0, getMethod(written, "second").access & AccessFlags.ACC_PUBLIC);
+
+		info.getMethods().filter(it -> it.getName().equals("second")).forEach(it -> it.setReturnType(new Type("J")));
+		new ClassReader(info.toByteArray()).accept(written, 0);
+		Assert.assertTrue(tiered.hasCode());
+	}
+
+	@Test
+	public void testMethodsWrittenInPlace() throws Exception {
+		val tiered = new TieredClassNode(TieredClassNodeTest::readTarget);
+		val info = new ByteCodeInfo(tiered, "Target", new HashMap<>());
+		info.getMethods().filter(it -> it.getName().equals("first")).forEach(it -> ((ByteCodeInfo.MethodNodeInfo) it).markCodeDirty());
+		tiered.get().methods.add(0, new MethodNode(AccessFlags.ACC_ABSTRACT, "added", "()V", null, null));
+
+		val written = new ClassNode();
+		new ClassReader(info.toByteArray()).accept(written, 0);
+		val names = new ArrayList<String>();
+		for (MethodNode method : written.methods)
+			names.add(method.name);
+		Assert.assertEquals(Arrays.asList("added", "<init>", "first", "second", "third"), names);
+		Assert.assertNotEquals(0, getMethod(written, "second").instructions.size());
+	}
+
+	@Test
+	public void testFiltersAppliedOnce() throws Exception {
+		val tiered = new TieredClassNode(TieredClassNodeTest::readTarget);
+		val filters = new HashMap<String, String>();
+		filters.put("third", "fourth");
+		filters.put("fourth", "fifth");
+		val info = new ByteCodeInfo(tiered, "Target", filters);
+		info.getMethods().filter(it -> it.getName().equals("third")).forEach(it -> ((ByteCodeInfo.MethodNodeInfo) it).markCodeDirty());
+
+		val written = new ClassNode();
+		new ClassReader(info.toByteArray()).accept(written, 0);
+		val names = new ArrayList<String>();
+		for (MethodNode method : written.methods)
+			names.add(method.name);
+		Assert.assertEquals(Arrays.asList("<init>", "first", "second", "fourth"), names);
+	}
+
+	@Test
+	public void testDirectEditsWritten() throws Exception {
+		val tiered = new TieredClassNode(TieredClassNodeTest::readTarget);
+		val info = new ByteCodeInfo(tiered, "Target", new HashMap<>());
+		Assert.assertFalse(info.toString().isEmpty());
+		Assert.assertFalse(tiered.hasCode());
+
+		val second = getMethod(info.getNode().get(), "second");
+		Assert.assertNotEquals(0, second.instructions.size());
+		second.instructions.clear();
+		second.localVariables.clear();
+		second.instructions.add(new InsnNode(Opcodes.ICONST_5));
+		second.instructions.add(new InsnNode(Opcodes.IRETURN));
+
+		val written = new ClassNode();
+		new ClassReader(info.toByteArray()).accept(written, 0);
+		AbstractInsnNode first = getMethod(written, "second").instructions.getFirst();
+		while (first.getOpcode() == -1)
+			first = first.getNext();
+		Assert.assertEquals(Opcodes.ICONST_5, first.getOpcode());
+	}
+
+	@SuppressWarnings("unused")
+	private static class Target {
+		int first(int value) {
+			return value * 2 + 1;
+		}
+
+		int second() {
+			return 2;
+		}
+
+		int third() {
+			return 3;
+		}
+	}
+}
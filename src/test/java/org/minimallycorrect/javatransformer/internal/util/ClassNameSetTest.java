@@ -0,0 +1,49 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ClassNameSetTest {
+	private static final List<String> NAMES = Arrays.asList("java.util.List", "java.util.ArrayList", "java.util.Map", "java.util.Map.Entry", "java.lang.String", "org.example.Ünicode", "org.example.Zebra", "Default", "java.util.List");
+
+	@Test
+	public void testContains() throws Exception {
+		val set = ClassNameSet.of(NAMES);
+		Assert.assertEquals(8, set.size());
+		for (String name : NAMES)
+			Assert.assertTrue(name, set.contains(name));
+		Assert.assertFalse(set.contains("java.util.Set"));
+		Assert.assertFalse(set.contains("java.util"));
+		Assert.assertFalse(set.contains("java.utilList"));
+		Assert.assertFalse(set.contains("java.util.Lis"));
+		Assert.assertFalse(set.contains("java.util.Lists"));
+		Assert.assertFalse(set.contains("org.example.Unicode"));
+		Assert.assertFalse(set.contains("Missing"));
+		Assert.assertFalse(ClassNameSet.EMPTY.contains("java.util.List"));
+	}
+
+	@Test
+	public void testGetClassesInPackage() throws Exception {
+		val set = ClassNameSet.of(NAMES);
+		Assert.assertEquals(Arrays.asList("java.util.ArrayList", "java.util.List", "java.util.Map"), set.getClassesInPackage("java.util"));
+		Assert.assertEquals(Collections.singletonList("java.util.Map.Entry"), set.getClassesInPackage("java.util.Map"));
+		Assert.assertEquals(Arrays.asList("org.example.Zebra", "org.example.Ünicode"), set.getClassesInPackage("org.example"));
+		Assert.assertEquals(Collections.singletonList("Default"), set.getClassesInPackage(""));
+		Assert.assertEquals(Collections.emptyList(), set.getClassesInPackage("java"));
+	}
+
+	@Test
+	public void testWith() throws Exception {
+		val set = ClassNameSet.of(NAMES).with(Arrays.asList("java.util.Set", "java.util.List"));
+		Assert.assertEquals(9, set.size());
+		Assert.assertTrue(set.contains("java.util.Set"));
+		Assert.assertEquals(NAMES.stream().distinct().count() + 1, set.stream().collect(Collectors.toSet()).size());
+	}
+}
@@ -0,0 +1,26 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IOUtilTest {
+	private static byte[] data(int length) {
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++)
+			data[i] = (byte) i;
+		return data;
+	}
+
+	@Test
+	public void testReadFully() throws Exception {
+		for (int length : new int[]{0, 1, 8191, 8192, 8193, 100000}) {
+			byte[] data = data(length);
+			Assert.assertArrayEquals(data, IOUtil.readFully(new ByteArrayInputStream(data), length));
+			Assert.assertArrayEquals(data, IOUtil.readFully(new ByteArrayInputStream(data), -1));
+			Assert.assertArrayEquals(data, IOUtil.readFully(new ByteArrayInputStream(data), length / 2));
+			Assert.assertArrayEquals(data, IOUtil.readFully(new ByteArrayInputStream(data), length * 2L + 1));
+		}
+	}
+}
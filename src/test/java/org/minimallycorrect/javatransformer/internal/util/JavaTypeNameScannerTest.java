@@ -0,0 +1,120 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.TypeDeclaration;
+
+public class JavaTypeNameScannerTest {
+	private static final String[] CORPUS = {
+		"class A {}",
+		"package a.b; public final class A<T extends Comparable<T>> extends Object implements Runnable { public void run() {} }",
+		"package a; class A { class B { interface C { enum D { X, Y; @interface E {} } } } }",
+		"package a; /* class Comment {} */ // class LineComment {}\nclass A { String s = \"class Str {}\"; char c = '{'; char d = '\\''; }",
+		"package a; class A { Class<?> c = String.class; Class<?> d = int[].class; class B {} }",
+		"package a; class A { void m() { class Local {} new Object() { class InAnonymous {} }; } class B {} }",
+		"package a; class A { static { class InStatic {} } { class InInstance {} } int[] x = {1, 2}; Runnable r = () -> { class InLambda {} }; }",
+		"package a; enum E { A { class InConstant {} }, B(1) { }, C; E() {} E(int x) {} class Member {} }",
+		"package a; @interface Ann { String[] value() default {\"a\", \"}\"}; Class<?> type() default Object.class; class Nested {} }",
+		"@Deprecated package a; @SuppressWarnings({\"unchecked\", \"rawtypes\"}) class A { @SuppressWarnings(value = {\"a\"}) class B {} }",
+		"package a; import java.util.List; import static java.util.Collections.*; class A {} interface B {} enum C {} @interface D {}",
+		"package a; class A { <T> T m(List<? extends T> l) { return null; } abstract class B<X> implements java.io.Serializable, Cloneable {} }",
+		"package a; class A { int x = 0x1F + 1_000 + (int) 1.5e-3 + 'a'; double y = .5; String s = \"\\\\\"; class B {} }",
+		"package a; class A { Object o = new Object() { @Override public String toString() { return \"}\"; } }; class B {} }",
+		"package a; class A { void m() { switch (1) { case 1: { break; } } } class B {} }",
+		"package a; class A { void m() throws Exception { try { } catch (RuntimeException e) { } finally { } } } class Second {}",
+		"\uFEFFpackage a; class Bom {}",
+		"class A { class $Dollar { class _Underscore {} } }",
+	};
+
+	private static List<String> parse(String source) {
+		val names = new ArrayList<String>();
+		val compilationUnit = JavaParser.parse(source);
+		val packageDeclaration = compilationUnit.getPackageDeclaration().orElse(null);
+		val prefix = packageDeclaration == null ? "" : packageDeclaration.getNameAsString() + '.';
+		for (Node typeDeclaration : compilationUnit.getTypes())
+			parse(typeDeclaration, prefix, names);
+		return names;
+	}
+
+	private static void parse(Node typeDeclaration, String prefix, List<String> names) {
+		val name = prefix + ((TypeDeclaration<?>) typeDeclaration).getNameAsString();
+		names.add(name);
+		for (val node : typeDeclaration.getChildNodes())
+			if (node instanceof TypeDeclaration)
+				parse(node, name + '.', names);
+	}
+
+	@Test
+	public void testCorpusMatchesJavaParser() throws Exception {
+		for (String source : CORPUS) {
+			val scanned = JavaTypeNameScanner.scan(source);
+			Assert.assertNotNull("Scanner should handle " + source, scanned);
+			Assert.assertEquals(source, parse(source), scanned);
+		}
+	}
+
+	@Test
+	public void testRepositorySourcesMatchJavaParser() throws Exception {
+		List<Path> files;
+		try (Stream<Path> stream = Stream.of(Paths.get("src/main/java"), Paths.get("src/test/java")).flatMap(JavaTypeNameScannerTest::walk)) {
+			files = stream.filter(it -> it.toString().endsWith(".java")).collect(Collectors.toList());
+		}
+		Assert.assertFalse(files.isEmpty());
+
+		int scanned = 0;
+		for (val file : files) {
+			val source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+			val names = JavaTypeNameScanner.scan(source);
+			if (names == null)
+				continue;
+			scanned++;
+			Assert.assertEquals(file.toString(), parse(source), names);
+		}
+		Assert.assertTrue("Scanner should handle most sources, handled " + scanned + " of " + files.size(), scanned * 2 > files.size());
+	}
+
+	private static Stream<Path> walk(Path path) {
+		try {
+			return Files.walk(path);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Test
+	public void testNewerSyntax() throws Exception {
+		Assert.assertEquals(Arrays.asList("a.A", "a.A.B"), JavaTypeNameScanner.scan("package a; class A { String s = \"\"\"\n  class NotAClass { \\\"\"\" }\n  \"\"\"; class B {} }"));
+		Assert.assertEquals(Arrays.asList("a.A", "a.A.B"), JavaTypeNameScanner.scan("package a; sealed interface A permits A.B { non-sealed class B implements A {} }"));
+		Assert.assertEquals(Collections.singletonList("a.A"), JavaTypeNameScanner.scan("package a; class A { int record = 1; void record() {} }"));
+	}
+
+	@Test
+	public void testAmbiguousSources() throws Exception {
+		Assert.assertNull(JavaTypeNameScanner.scan("package a; record R(int x) {}"));
+		Assert.assertNull(JavaTypeNameScanner.scan("package a; class A { record R(int x) {} }"));
+		Assert.assertNull(JavaTypeNameScanner.scan("package a; class \\u0041 {}"));
+		Assert.assertNull(JavaTypeNameScanner.scan("module a.b { requires c; }"));
+		Assert.assertNull(JavaTypeNameScanner.scan("package a; class A {"));
+		Assert.assertNull(JavaTypeNameScanner.scan("package a; class A { String s = \"unterminated; }"));
+		Assert.assertNull(JavaTypeNameScanner.scan("package a; class A { /* unterminated }"));
+		Assert.assertNull(JavaTypeNameScanner.scan("package a; class A { ) }"));
+	}
+}
@@ -0,0 +1,79 @@
+package org.minimallycorrect.javatransformer.internal.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TargetIndexTest {
+	@Test
+	public void testTargets() {
+		val index = new TargetIndex<String>();
+		index.addClass("com.example.Exact", "exact");
+		index.addPackage("com.example.entity", "package");
+		index.addPattern("com.example.**.*Dao", "dao");
+		index.addPattern("*.Root?", "root");
+
+		Assert.assertEquals(Collections.singletonList("exact"), index.get("com.example.Exact"));
+		Assert.assertEquals(Collections.singletonList("package"), index.get("com.example.entity.User"));
+		Assert.assertEquals(Collections.singletonList("package"), index.get("com.example.entity.sub.Group$Inner"));
+		Assert.assertEquals(Arrays.asList("package", "dao"), index.get("com.example.entity.UserDao"));
+		Assert.assertEquals(Collections.singletonList("root"), index.get("a.Root1"));
+		Assert.assertFalse(index.matches("com.example.entity"));
+		Assert.assertFalse(index.matches("com.example.Exact.Other"));
+		Assert.assertFalse(index.matches("com.example.Other"));
+		Assert.assertFalse(index.matches("a.b.Root1"));
+		Assert.assertTrue(index.matches("com.example.a.b.UserDao"));
+		Assert.assertTrue(index.containsClass("com.example.Exact", "exact"));
+		Assert.assertEquals(Collections.singleton("com.example.Exact"), index.getClasses().keySet());
+	}
+
+	@Test
+	public void testAnnotationTargets() {
+		val index = new TargetIndex<String>();
+		index.addAnnotation("com.example.Entity", "entity");
+		index.addClass("com.example.User", "user");
+		index.addAnnotation("com.example.Other", "entity");
+
+		Assert.assertTrue(index.matches("com.example.Anything"));
+		Assert.assertEquals(Collections.emptyList(), index.get("com.example.Anything"));
+		Assert.assertEquals(Arrays.asList("entity", "user"), index.get("com.example.User", Arrays.asList("com.example.Entity", "com.example.Other")));
+		Assert.assertEquals(Arrays.asList("entity", "user"), index.getCandidates("com.example.User"));
+	}
+
+	@Test
+	public void testDoubleStarMatchesNoPackages() {
+		val index = new TargetIndex<String>();
+		index.addPattern("com.example.**.*Entity", "entity");
+		index.addPattern("org.**", "org");
+
+		Assert.assertTrue(index.matches("com.example.FooEntity"));
+		Assert.assertTrue(index.matches("com.example.foo.bar.BarEntity"));
+		Assert.assertFalse(index.matches("com.exampleFooEntity"));
+		Assert.assertFalse(index.matches("com.example.FooEntity.Other"));
+		Assert.assertTrue(index.matches("org.Foo"));
+		Assert.assertTrue(index.matches("org.a.b.Foo"));
+	}
+
+	@Test
+	public void testDoubleStarWithinSegmentRequiresPackage() {
+		val index = new TargetIndex<String>();
+		index.addPattern("com.acme**.Dao", "dao");
+
+		Assert.assertFalse(index.matches("com.acmeDao"));
+		Assert.assertTrue(index.matches("com.acme.Dao"));
+		Assert.assertTrue(index.matches("com.acmecorp.db.Dao"));
+	}
+
+	@Test
+	public void testDefaultPackage() {
+		val index = new TargetIndex<String>();
+		index.addPackage("", "all");
+
+		Assert.assertTrue(index.matches("Foo"));
+		Assert.assertEquals(Collections.singletonList("all"), index.get("a.b.Foo"));
+	}
+}
@@ -0,0 +1,136 @@
+package org.minimallycorrect.javatransformer.internal.zip;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import lombok.val;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZipArchiveTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static Map<String, byte[]> contents() {
+		val contents = new LinkedHashMap<String, byte[]>();
+		contents.put("META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+		contents.put("org/example/", new byte[0]);
+		contents.put("org/example/Example.class", repeat("example", 1000));
+		contents.put("org/example/Ünicode.txt", "ünïcödé".getBytes(StandardCharsets.UTF_8));
+		return contents;
+	}
+
+	private static byte[] repeat(String value, int times) {
+		val builder = new StringBuilder();
+		for (int i = 0; i < times; i++)
+			builder.append(value).append(i);
+		return builder.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static byte[] readFully(InputStream is) throws IOException {
+		val out = new ByteArrayOutputStream();
+		val buffer = new byte[4096];
+		int read;
+		while ((read = is.read(buffer)) != -1)
+			out.write(buffer, 0, read);
+		return out.toByteArray();
+	}
+
+	private static void assertContents(Map<String, byte[]> expected, Path jar) throws IOException {
+		try (ZipFile zipFile = new ZipFile(jar.toFile())) {
+			val entries = zipFile.entries();
+			val names = new LinkedHashMap<String, byte[]>();
+			while (entries.hasMoreElements()) {
+				val entry = entries.nextElement();
+				try (InputStream is = zipFile.getInputStream(entry)) {
+					names.put(entry.getName(), readFully(is));
+				}
+			}
+			Assert.assertEquals(expected.keySet(), names.keySet());
+			for (val entry : expected.entrySet())
+				Assert.assertArrayEquals(entry.getKey(), entry.getValue(), names.get(entry.getKey()));
+		}
+	}
+
+	@Test
+	public void testReadZipOutputStreamArchive() throws Exception {
+		val jar = folder.newFile("input.jar").toPath();
+		val contents = contents();
+		try (ZipOutputStream os = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(jar.toFile())))) {
+			for (val entry : contents.entrySet()) {
+				os.putNextEntry(new ZipEntry(entry.getKey()));
+				os.write(entry.getValue());
+				os.closeEntry();
+			}
+		}
+
+		try (ZipArchive archive = ZipArchive.open(jar)) {
+			Assert.assertEquals(contents.size(), archive.getEntries().size());
+			for (val entry : archive.getEntries()) {
+				Assert.assertArrayEquals(entry.getName(), contents.get(entry.getName()), entry.get());
+				Assert.assertEquals(entry.getName().endsWith("/"), entry.isDirectory());
+				Assert.assertSame(entry, archive.getEntry(entry.getName()));
+			}
+			Assert.assertNull(archive.getEntry("org/example/Missing.class"));
+		}
+	}
+
+	@Test
+	public void testWriteAndCopy() throws Exception {
+		val written = folder.newFile("written.jar").toPath();
+		val contents = contents();
+		try (ZipWriter writer = new ZipWriter(new BufferedOutputStream(new FileOutputStream(written.toFile())))) {
+			for (val entry : contents.entrySet())
+				writer.write(entry.getKey(), entry.getValue());
+		}
+		assertContents(contents, written);
+
+		val copied = folder.newFile("copied.jar").toPath();
+		try (ZipArchive archive = ZipArchive.open(written); ZipWriter writer = new ZipWriter(new BufferedOutputStream(new FileOutputStream(copied.toFile())))) {
+			for (val entry : archive.getEntries())
+				writer.copy(entry);
+		}
+		assertContents(contents, copied);
+
+		try (ZipArchive first = ZipArchive.open(written); ZipArchive second = ZipArchive.open(copied)) {
+			for (int i = 0; i < first.getEntries().size(); i++) {
+				val a = first.getEntries().get(i);
+				val b = second.getEntries().get(i);
+				Assert.assertEquals(a.getName(), b.getName());
+				Assert.assertEquals(a.getCrc(), b.getCrc());
+				Assert.assertEquals(a.readCompressed(), b.readCompressed());
+			}
+		}
+	}
+
+	@Test(expected = ZipException.class)
+	public void testDuplicateEntry() throws Exception {
+		val jar = folder.newFile("duplicate.jar").toPath();
+		try (ZipWriter writer = new ZipWriter(new BufferedOutputStream(new FileOutputStream(jar.toFile())))) {
+			writer.write("a", new byte[]{1});
+			writer.write("a", new byte[]{2});
+		}
+	}
+
+	@Test(expected = ZipException.class)
+	public void testNotAnArchive() throws Exception {
+		val file = folder.newFile("invalid.jar").toPath();
+		Files.write(file, new byte[]{1, 2, 3});
+		ZipArchive.open(file).close();
+	}
+}